@@ -0,0 +1,37 @@
+-- Diárias ativas que ocupam o mesmo quarto na mesma data.
+--
+-- Enquanto esta consulta devolver linhas, o índice uk_diaria_quarto_data_inicio (schema.sql) não
+-- pode ser criado e a aplicação não sobe. Rode antes de publicar a versão com o índice e resolva
+-- cada conflito com a equipe da recepção: normalmente um dos pernoites é o válido e o outro deve ser
+-- cancelado pela aplicação, o que marca as suas diárias como canceladas. Ajuste também o valor total
+-- e os pagamentos do pernoite que ficar, se a noite duplicada tinha sido cobrada.
+--
+-- Uso: psql "$DATABASE_URL" -f scripts/diarias_duplicadas.sql
+
+SELECT d.quarto_id,
+       d.data_inicio,
+       d.id                                        AS diaria_id,
+       d.numero_diaria,
+       d.pernoite_id,
+       p.status_pernoite_enum,
+       p.data_entrada,
+       p.data_saida,
+       p.valot_total,
+       (SELECT COALESCE(SUM(dp.valor), 0)
+        FROM diaria_pagamento dp
+        WHERE dp.diaria_id = d.id)                 AS pago_na_diaria,
+       (SELECT string_agg(pe.nome, ', ' ORDER BY pe.nome)
+        FROM diaria_hospedes dh
+        JOIN pessoa pe ON pe.id = dh.hospedes_id
+        WHERE dh.diaria_id = d.id)                 AS hospedes
+FROM diaria d
+JOIN pernoite p ON p.id = d.pernoite_id
+WHERE NOT d.cancelada
+  AND (d.quarto_id, d.data_inicio) IN (
+      SELECT quarto_id, data_inicio
+      FROM diaria
+      WHERE NOT cancelada
+      GROUP BY quarto_id, data_inicio
+      HAVING COUNT(*) > 1
+  )
+ORDER BY d.quarto_id, d.data_inicio, d.id;
@@ -0,0 +1,38 @@
+package com.istoe.demo.controller;
+
+import com.istoe.demo.response.AuditoriaEtapaResponse;
+import com.istoe.demo.service.AuditoriaNoturnaService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/auditoria-noturna")
+public class AuditoriaNoturnaController {
+
+    private final AuditoriaNoturnaService auditoriaNoturnaService;
+
+    public AuditoriaNoturnaController(AuditoriaNoturnaService auditoriaNoturnaService) {
+        this.auditoriaNoturnaService = auditoriaNoturnaService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<AuditoriaEtapaResponse>> listarExecucoes(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data) {
+        return ResponseEntity.ok(auditoriaNoturnaService.listarExecucoes(data));
+    }
+
+    @PostMapping
+    public ResponseEntity<List<AuditoriaEtapaResponse>> executar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate data,
+            @RequestParam(defaultValue = "false") boolean refazer) {
+        try {
+            return ResponseEntity.ok(auditoriaNoturnaService.executar(data, refazer));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
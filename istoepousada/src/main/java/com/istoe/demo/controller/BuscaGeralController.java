@@ -0,0 +1,32 @@
+package com.istoe.demo.controller;
+
+import com.istoe.demo.response.BuscaGeralResponse;
+import com.istoe.demo.service.BuscaGeralService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/busca")
+public class BuscaGeralController {
+
+    private final BuscaGeralService buscaGeralService;
+
+    public BuscaGeralController(BuscaGeralService buscaGeralService) {
+        this.buscaGeralService = buscaGeralService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<BuscaGeralResponse>> buscar(
+            @RequestParam String termo,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(buscaGeralService.buscar(termo, limite));
+    }
+
+    @PostMapping("/reindexar")
+    public ResponseEntity<Void> reindexar() {
+        buscaGeralService.reconstruir();
+        return ResponseEntity.noContent().build();
+    }
+}
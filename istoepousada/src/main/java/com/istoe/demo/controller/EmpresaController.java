@@ -19,7 +19,14 @@ public class EmpresaController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Empresa>> listarTodas() {
+    public ResponseEntity<List<?>> listarTodas(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(empresaService.listarCampos(fields, null));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
         return ResponseEntity.ok(empresaService.listarTodas());
     }
 
@@ -43,7 +50,16 @@ public class EmpresaController {
     }
 
     @GetMapping("/buscar")
-    public ResponseEntity<List<Empresa>> buscarPorNomeOuCnpj(@RequestParam String termo) {
+    public ResponseEntity<List<?>> buscarPorNomeOuCnpj(
+            @RequestParam String termo,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                return ResponseEntity.ok(empresaService.listarCampos(fields, termo));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
         return ResponseEntity.ok(empresaService.buscarPorNomeOuCnpj(termo));
     }
 
@@ -0,0 +1,57 @@
+package com.istoe.demo.controller;
+
+import com.istoe.demo.service.ExportacaoService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/exportacoes")
+@CrossOrigin(origins = "*")
+public class ExportacaoController {
+
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final ExportacaoService exportacaoService;
+
+    public ExportacaoController(ExportacaoService exportacaoService) {
+        this.exportacaoService = exportacaoService;
+    }
+
+    @GetMapping("/relatorios")
+    public ResponseEntity<StreamingResponseBody> exportarRelatorio(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        try {
+            return csv("relatorio", exportacaoService.exportarRelatorio(dataInicio, dataFim));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/pernoites")
+    public ResponseEntity<StreamingResponseBody> exportarPernoites(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        try {
+            return csv("pernoites", exportacaoService.exportarPernoites(dataInicio, dataFim));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static ResponseEntity<StreamingResponseBody> csv(String nome, StreamingResponseBody corpo) {
+        return ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(nome + ".csv").build().toString())
+                .body(corpo);
+    }
+}
@@ -3,6 +3,9 @@ package com.istoe.demo.controller;
 import com.istoe.demo.enums.StatusPernoiteEnum;
 import com.istoe.demo.request.CreatePernoiteRequest;
 import com.istoe.demo.request.UpdateDiariaRequest;
+import com.istoe.demo.response.LotePernoiteResponse;
+import com.istoe.demo.response.PaginaResponse;
+import com.istoe.demo.response.PernoiteResumoResponse;
 import com.istoe.demo.service.PernoiteService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -30,6 +33,13 @@ public class PernoiteController {
         return ResponseEntity.status(HttpStatus.CREATED).body(id);
     }
 
+    @PostMapping("/lote")
+    public ResponseEntity<LotePernoiteResponse> criarPernoitesEmLote(@RequestBody List<CreatePernoiteRequest> requests) {
+        LotePernoiteResponse resultado = pernoiteService.criarPernoitesEmLote(requests);
+        HttpStatus status = resultado.sucesso() ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(resultado);
+    }
+
     @PutMapping("/{pernoiteId}/diarias")
     @ResponseStatus(HttpStatus.OK)
     public void adicionarDiariasAoPernoite(
@@ -60,11 +70,24 @@ public class PernoiteController {
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
-    public ResponseEntity<List<Map<String, Object>>> listarPorStatus(
-            @RequestParam(value = "status", required = false) StatusPernoiteEnum status
+    public ResponseEntity<List<PernoiteResumoResponse>> listarPorStatus(
+            @RequestParam(value = "status", required = false) StatusPernoiteEnum status,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limite", required = false) Integer limite
     ) {
-        List<Map<String, Object>> lista = pernoiteService.listarPorStatus(status);
-        return ResponseEntity.ok(lista);
+        PaginaResponse<PernoiteResumoResponse> pagina;
+        try {
+            pagina = pernoiteService.listarPorStatus(status, cursor, limite);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (pagina.proximoCursor() == null) {
+            return ResponseEntity.ok(pagina.itens());
+        }
+        return ResponseEntity.ok()
+                .header("X-Proximo-Cursor", pagina.proximoCursor())
+                .body(pagina.itens());
     }
 
     @GetMapping("/{id}/detalhes")
@@ -1,12 +1,17 @@
 package com.istoe.demo.controller;
 
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.Pessoa;
+import com.istoe.demo.response.PessoaResumoResponse;
 import com.istoe.demo.service.PessoaService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pessoas")
@@ -19,8 +24,47 @@ public class PessoaController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Pessoa>> listarTodos() {
-        return ResponseEntity.ok(pessoaService.listarTodos());
+    public ResponseEntity<List<?>> listarTodos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                PaginaResponse<Map<String, Object>> pagina = pessoaService.listarCampos(fields, false, cursor, limite);
+                return pagina(pagina.itens(), pagina.proximoCursor());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (cursor == null && limite == null) {
+            return ResponseEntity.ok(pessoaService.listarTodos());
+        }
+        try {
+            PaginaResponse<Pessoa> pagina = pessoaService.listarPagina(false, cursor, limite);
+            return pagina(pagina.itens(), pagina.proximoCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/resumo")
+    public ResponseEntity<List<?>> listarResumos(
+            @RequestParam(required = false) String termo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            PaginaResponse<PessoaResumoResponse> pagina = pessoaService.listarResumos(termo, cursor, limite);
+            return pagina(pagina.itens(), pagina.proximoCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> transmitirTodos() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(pessoaService.transmitir(false));
     }
 
     @GetMapping("/{id}")
@@ -43,13 +87,56 @@ public class PessoaController {
     }
 
     @GetMapping("/buscar")
-    public ResponseEntity<List<Pessoa>> buscarPorNomeOuCpf(@RequestParam String termo) {
-        return ResponseEntity.ok(pessoaService.buscarPorNomeOuCpf(termo));
+    public ResponseEntity<List<?>> buscarPorNomeOuCpf(
+            @RequestParam String termo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                PaginaResponse<Map<String, Object>> pagina = pessoaService.buscarCampos(fields, termo, cursor, limite);
+                return pagina(pagina.itens(), pagina.proximoCursor());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        try {
+            PaginaResponse<Pessoa> pagina = pessoaService.buscar(termo, cursor, limite);
+            return pagina(pagina.itens(), pagina.proximoCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/hospedados")
-    public ResponseEntity<List<Pessoa>> listarHospedados() {
-        return ResponseEntity.ok(pessoaService.listarHospedados());
+    public ResponseEntity<List<?>> listarHospedados(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            try {
+                PaginaResponse<Map<String, Object>> pagina = pessoaService.listarCampos(fields, true, cursor, limite);
+                return pagina(pagina.itens(), pagina.proximoCursor());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (cursor == null && limite == null) {
+            return ResponseEntity.ok(pessoaService.listarHospedados());
+        }
+        try {
+            PaginaResponse<Pessoa> pagina = pessoaService.listarPagina(true, cursor, limite);
+            return pagina(pagina.itens(), pagina.proximoCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/hospedados", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> transmitirHospedados() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(pessoaService.transmitir(true));
     }
 
     @PostMapping
@@ -123,4 +210,13 @@ public class PessoaController {
         pessoaService.deletar(id);
         return ResponseEntity.noContent().build();
     }
+
+    private static ResponseEntity<List<?>> pagina(List<?> itens, String proximoCursor) {
+        if (proximoCursor == null) {
+            return ResponseEntity.ok(itens);
+        }
+        return ResponseEntity.ok()
+                .header("X-Proximo-Cursor", proximoCursor)
+                .body(itens);
+    }
 }
@@ -3,13 +3,20 @@ package com.istoe.demo.controller;
 import com.istoe.demo.enums.RoomStatusEnum;
 import com.istoe.demo.request.CreateQuartoRequest;
 import com.istoe.demo.request.UpdateQuartoRequest;
+import com.istoe.demo.response.CalendarioQuartosResponse;
 import com.istoe.demo.response.CategoriaResponse;
+import com.istoe.demo.response.DisponibilidadeResponse;
 import com.istoe.demo.response.ObjetoResponse;
 import com.istoe.demo.response.RoomsResponse;
+import com.istoe.demo.service.QuadroQuartosService;
 import com.istoe.demo.service.QuartosService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.net.URI;
 import java.time.LocalDate;
@@ -29,12 +36,43 @@ public class QuartosController {
     public ResponseEntity<RoomsResponse> getRooms(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
             @RequestParam(required = false) RoomStatusEnum status,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        QuadroQuartosService.QuadroVersionado quadro = quartosService.findRoomsBoard(date, status, search);
+        if (quadro != null) {
+            if (ifNoneMatch != null && ifNoneMatch.contains(quadro.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(quadro.etag()).build();
+            }
+            return ResponseEntity.ok().eTag(quadro.etag()).body(quadro.quadro());
+        }
 
         RoomsResponse response = quartosService.findRoomsByFilters(date, status, search);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/disponibilidade")
+    public ResponseEntity<List<DisponibilidadeResponse>> getDisponibilidade(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+            @RequestParam(required = false) Integer pessoas) {
+
+        return ResponseEntity.ok(quartosService.listarDisponiveis(inicio, fim, pessoas));
+    }
+
+    @GetMapping("/calendario")
+    public ResponseEntity<CalendarioQuartosResponse> getCalendario(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+
+        return ResponseEntity.ok(quartosService.calendario(inicio, fim));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return quartosService.inscreverStream(lastEventId);
+    }
+
     @GetMapping("/status")
     public ResponseEntity<RoomStatusEnum[]> getRoomStatuses() {
         return ResponseEntity.ok(quartosService.getAllRoomStatuses());
@@ -57,6 +95,12 @@ public class QuartosController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/tarifas/recarregar")
+    public ResponseEntity<Void> recarregarTarifas() {
+        quartosService.recarregarTarifas();
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/enum")
     public List<ObjetoResponse> listarQuartosEnum() {
         return quartosService.listarQuartosEnum();
@@ -1,7 +1,10 @@
 package com.istoe.demo.controller;
 
 import com.istoe.demo.request.RelatorioRequest;
+import com.istoe.demo.response.FechamentoCaixaResponse;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.RelatorioResponse;
+import com.istoe.demo.response.ResumoCaixaResponse;
 import com.istoe.demo.service.RelatorioService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -37,6 +40,35 @@ public class RelatorioController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/fechamento")
+    public ResponseEntity<FechamentoCaixaResponse> fechamentoCaixa(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        try {
+            return ResponseEntity.ok(relatorioService.fechamentoCaixa(dataInicio, dataFim));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/resumo-diario")
+    public ResponseEntity<ResumoCaixaResponse> resumoCaixa(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        try {
+            return ResponseEntity.ok(relatorioService.resumoCaixa(dataInicio, dataFim));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/resumo-diario/reconstruir")
+    public ResponseEntity<Integer> reconstruirResumoDiario(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        return ResponseEntity.ok(relatorioService.reconstruirResumoDiario(dataInicio, dataFim));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<RelatorioResponse> findById(
             @PathVariable Long id) {
@@ -56,10 +88,30 @@ public class RelatorioController {
 
             @RequestParam(required = false) Long quartoId,
 
-            @RequestParam(required = false) Long pernoiteId) {
+            @RequestParam(required = false) Long pernoiteId,
 
-        List<RelatorioResponse> response = relatorioService.findByFilters(dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId);
-        return ResponseEntity.ok(response);
+            @RequestParam(required = false) String cursor,
+
+            @RequestParam(required = false) Integer limite) {
+
+        if (cursor == null && limite == null) {
+            List<RelatorioResponse> response = relatorioService.findByFilters(dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId);
+            return ResponseEntity.ok(response);
+        }
+
+        PaginaResponse<RelatorioResponse> pagina;
+        try {
+            pagina = relatorioService.findPagina(
+                    dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId, cursor, limite);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (pagina.proximoCursor() == null) {
+            return ResponseEntity.ok(pagina.itens());
+        }
+        return ResponseEntity.ok()
+                .header("X-Proximo-Cursor", pagina.proximoCursor())
+                .body(pagina.itens());
     }
 
     @DeleteMapping("/{id}")
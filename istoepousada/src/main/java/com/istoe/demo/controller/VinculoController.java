@@ -1,10 +1,13 @@
 package com.istoe.demo.controller;
 
 import com.istoe.demo.response.Empresa;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.Pessoa;
 import com.istoe.demo.service.VinculoService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.util.List;
 
@@ -33,8 +36,32 @@ public class VinculoController {
     }
 
     @GetMapping("/pessoas")
-    public ResponseEntity<List<Pessoa>> listarTodasPessoasComEmpresas() {
-        return ResponseEntity.ok(vinculoService.listarTodasPessoasComEmpresas());
+    public ResponseEntity<List<Pessoa>> listarTodasPessoasComEmpresas(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        if (cursor == null && limite == null) {
+            return ResponseEntity.ok(vinculoService.listarTodasPessoasComEmpresas());
+        }
+
+        PaginaResponse<Pessoa> pagina;
+        try {
+            pagina = vinculoService.listarPessoasComEmpresasPagina(cursor, limite);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (pagina.proximoCursor() == null) {
+            return ResponseEntity.ok(pagina.itens());
+        }
+        return ResponseEntity.ok()
+                .header("X-Proximo-Cursor", pagina.proximoCursor())
+                .body(pagina.itens());
+    }
+
+    @GetMapping(value = "/pessoas", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> transmitirPessoasComEmpresas() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(vinculoService.transmitirPessoasComEmpresas());
     }
 
     @GetMapping("/empresas")
@@ -54,15 +81,32 @@ public class VinculoController {
         }
     }
 
+    /**
+     * Em caso de erro, o 400 traz o motivo no corpo (por exemplo, os IDs de pessoas inexistentes).
+     */
     @PostMapping("/criar-multiplos")
-    public ResponseEntity<Void> criarVinculos(
+    public ResponseEntity<String> criarVinculos(
             @RequestParam Long empresaId,
             @RequestBody List<Long> pessoaIds) {
         try {
             vinculoService.criarVinculos(empresaId, pessoaIds);
             return ResponseEntity.noContent().build();
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Em caso de erro, o 400 traz o motivo no corpo (por exemplo, os IDs de pessoas inexistentes).
+     */
+    @PutMapping("/empresa/{empresaId}")
+    public ResponseEntity<?> substituirVinculos(
+            @PathVariable Long empresaId,
+            @RequestBody List<Long> pessoaIds) {
+        try {
+            return ResponseEntity.ok(vinculoService.substituirVinculos(empresaId, pessoaIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
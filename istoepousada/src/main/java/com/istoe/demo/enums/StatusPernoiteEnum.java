@@ -11,10 +11,25 @@ public enum StatusPernoiteEnum {
     FINALIZADO_PAGAMENTO_PENDENTE(4);
 
 
+    private static final StatusPernoiteEnum[] POR_VALOR = new StatusPernoiteEnum[values().length];
+
+    static {
+        for (StatusPernoiteEnum status : values()) {
+            POR_VALOR[status.value] = status;
+        }
+    }
+
     private final int value;
 
     StatusPernoiteEnum(int value) {
         this.value = value;
     }
 
+    /**
+     * Resolve o status pelo código gravado no banco, ou {@code null} se o código for desconhecido.
+     */
+    public static StatusPernoiteEnum fromValue(int value) {
+        return value >= 0 && value < POR_VALOR.length ? POR_VALOR[value] : null;
+    }
+
 }
@@ -0,0 +1,14 @@
+package com.istoe.demo.event;
+
+/**
+ * Publicado pelos repositórios de pessoa e empresa quando um registro é inserido, atualizado ou removido.
+ */
+public record CadastroAlteradoEvent(
+        Entidade entidade,
+        Long id
+) {
+    public enum Entidade {
+        PESSOA,
+        EMPRESA
+    }
+}
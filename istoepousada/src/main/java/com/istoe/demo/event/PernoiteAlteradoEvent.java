@@ -0,0 +1,16 @@
+package com.istoe.demo.event;
+
+/**
+ * Publicado pelo {@code PernoiteService} sempre que um pernoite altera a ocupação de um quarto.
+ */
+public record PernoiteAlteradoEvent(
+        Tipo tipo,
+        Long pernoiteId,
+        Long quartoId
+) {
+    public enum Tipo {
+        CHECK_IN,
+        PRORROGACAO,
+        CANCELAMENTO
+    }
+}
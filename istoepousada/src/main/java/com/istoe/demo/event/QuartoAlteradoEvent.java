@@ -0,0 +1,8 @@
+package com.istoe.demo.event;
+
+/**
+ * Publicado pelo {@code QuartosService} quando um quarto é criado ou atualizado.
+ */
+public record QuartoAlteradoEvent(
+        Long quartoId
+) {}
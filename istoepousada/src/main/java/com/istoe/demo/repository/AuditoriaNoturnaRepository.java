@@ -0,0 +1,149 @@
+package com.istoe.demo.repository;
+
+import com.istoe.demo.enums.RoomStatusEnum;
+import com.istoe.demo.enums.StatusPernoiteEnum;
+import com.istoe.demo.response.AuditoriaEtapaResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public class AuditoriaNoturnaRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditoriaNoturnaRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Pernoites ativos cuja data de saída já chegou passam a DIARIA_ENCERRADA.
+     */
+    public int encerrarDiarias(LocalDate dataReferencia) {
+        return jdbcTemplate.update("""
+                    UPDATE pernoite
+                    SET status_pernoite_enum = ?
+                    WHERE ativo
+                      AND status_pernoite_enum = ?
+                      AND data_saida <= ?
+                """,
+                StatusPernoiteEnum.DIARIA_ENCERRADA.getValue(),
+                StatusPernoiteEnum.ATIVO.getValue(),
+                dataReferencia);
+    }
+
+    /**
+     * Pernoites encerrados cuja saída foi antes da data de referência são finalizados.
+     * A soma dos pagamentos das diárias decide entre FINALIZADO e FINALIZADO_PAGAMENTO_PENDENTE.
+     */
+    public int finalizarPernoites(LocalDate dataReferencia) {
+        return jdbcTemplate.update("""
+                    WITH candidatos AS (
+                        SELECT id
+                        FROM pernoite
+                        WHERE ativo
+                          AND status_pernoite_enum = ?
+                          AND data_saida < ?
+                    ),
+                    pagos AS (
+                        SELECT d.pernoite_id, SUM(dp.valor) AS total_pago
+                        FROM diaria d
+                        JOIN diaria_pagamento dp ON dp.diaria_id = d.id
+                        WHERE d.pernoite_id IN (SELECT id FROM candidatos)
+                        GROUP BY d.pernoite_id
+                    )
+                    UPDATE pernoite p
+                    SET status_pernoite_enum = CASE
+                            WHEN COALESCE(pg.total_pago, 0) + 0.005 >= COALESCE(p.valot_total, 0) THEN ?
+                            ELSE ?
+                        END
+                    FROM candidatos c
+                    LEFT JOIN pagos pg ON pg.pernoite_id = c.id
+                    WHERE p.id = c.id
+                """,
+                StatusPernoiteEnum.DIARIA_ENCERRADA.getValue(),
+                dataReferencia,
+                StatusPernoiteEnum.FINALIZADO.getValue(),
+                StatusPernoiteEnum.FINALIZADO_PAGAMENTO_PENDENTE.getValue());
+    }
+
+    /**
+     * Quartos ainda ocupados por um pernoite que saiu antes da data de referência, e sem outro
+     * pernoite ativo para a noite de referência, vão para LIMPEZA. Sem limite inferior: uma auditoria
+     * que deixou de rodar não prende o quarto. Quem sai na própria data de referência ainda está na
+     * casa quando a auditoria roda (logo após a meia-noite), então esse quarto só é liberado pela
+     * auditoria da noite seguinte.
+     *
+     * @return os IDs dos quartos alterados
+     */
+    public List<Long> liberarQuartosParaLimpeza(LocalDate dataReferencia) {
+        return jdbcTemplate.queryForList("""
+                    UPDATE quarto q
+                    SET status_quarto_enum = ?
+                    WHERE q.status_quarto_enum = ?
+                      AND EXISTS (
+                          SELECT 1
+                          FROM pernoite p
+                          WHERE p.quarto_id = q.id
+                            AND p.ativo
+                            AND p.status_pernoite_enum IN (?, ?, ?)
+                            AND p.data_saida < ?::date
+                      )
+                      AND NOT EXISTS (
+                          SELECT 1
+                          FROM pernoite p
+                          WHERE p.quarto_id = q.id
+                            AND p.ativo
+                            AND p.status_pernoite_enum = ?
+                            AND p.data_entrada <= ?
+                            AND p.data_saida > ?
+                      )
+                    RETURNING q.id
+                """,
+                Long.class,
+                RoomStatusEnum.LIMPEZA.getCodigo(),
+                RoomStatusEnum.OCUPADO.getCodigo(),
+                StatusPernoiteEnum.DIARIA_ENCERRADA.getValue(),
+                StatusPernoiteEnum.FINALIZADO.getValue(),
+                StatusPernoiteEnum.FINALIZADO_PAGAMENTO_PENDENTE.getValue(),
+                dataReferencia,
+                StatusPernoiteEnum.ATIVO.getValue(),
+                dataReferencia,
+                dataReferencia);
+    }
+
+    public Set<String> listarEtapasConcluidas(LocalDate dataReferencia) {
+        return Set.copyOf(jdbcTemplate.queryForList(
+                "SELECT etapa FROM auditoria_noturna WHERE data_referencia = ?",
+                String.class, dataReferencia));
+    }
+
+    public void registrarEtapa(LocalDate dataReferencia, String etapa, int linhas, long duracaoMs) {
+        jdbcTemplate.update("""
+                    INSERT INTO auditoria_noturna (data_referencia, etapa, linhas, duracao_ms, executado_em)
+                    VALUES (?, ?, ?, ?, now())
+                    ON CONFLICT (data_referencia, etapa)
+                    DO UPDATE SET linhas = EXCLUDED.linhas,
+                                  duracao_ms = EXCLUDED.duracao_ms,
+                                  executado_em = EXCLUDED.executado_em
+                """, dataReferencia, etapa, linhas, duracaoMs);
+    }
+
+    public List<AuditoriaEtapaResponse> listarExecucoes(LocalDate dataReferencia) {
+        return jdbcTemplate.query("""
+                    SELECT data_referencia, etapa, linhas, duracao_ms, executado_em
+                    FROM auditoria_noturna
+                    WHERE data_referencia = ?
+                    ORDER BY executado_em
+                """, (rs, i) -> new AuditoriaEtapaResponse(
+                rs.getObject("data_referencia", LocalDate.class),
+                rs.getString("etapa"),
+                rs.getInt("linhas"),
+                rs.getLong("duracao_ms"),
+                rs.getTimestamp("executado_em").toLocalDateTime()
+        ), dataReferencia);
+    }
+}
@@ -0,0 +1,69 @@
+package com.istoe.demo.repository;
+
+import com.istoe.demo.response.BuscaGeralResponse.Tipo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Leituras enxutas usadas para montar o índice da busca geral: só as colunas pesquisáveis de cada cadastro.
+ */
+@Repository
+public class BuscaGeralRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BuscaGeralRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record Registro(Tipo tipo, Long id, String titulo, String detalhe, String documento) { }
+
+    /**
+     * Pessoas indexáveis; com {@code id} informado, retorna só aquela pessoa (ou nada, se foi removida).
+     */
+    public List<Registro> listarPessoas(Long id) {
+        return jdbcTemplate.query("""
+                    SELECT id, nome, cpf
+                    FROM pessoa
+                    WHERE (?::bigint IS NULL OR id = ?)
+                """, (rs, i) -> new Registro(
+                Tipo.PESSOA,
+                rs.getLong("id"),
+                rs.getString("nome"),
+                rs.getString("cpf"),
+                rs.getString("cpf")
+        ), id, id);
+    }
+
+    public List<Registro> listarEmpresas(Long id) {
+        return jdbcTemplate.query("""
+                    SELECT id, razao_social, nome_fantasia, cnpj
+                    FROM empresa
+                    WHERE (?::bigint IS NULL OR id = ?)
+                """, (rs, i) -> {
+            String razaoSocial = rs.getString("razao_social");
+            String nomeFantasia = rs.getString("nome_fantasia");
+            String titulo = nomeFantasia != null && !nomeFantasia.isBlank() && !nomeFantasia.equals(razaoSocial)
+                    ? razaoSocial + " (" + nomeFantasia + ")"
+                    : razaoSocial;
+            return new Registro(Tipo.EMPRESA, rs.getLong("id"), titulo, rs.getString("cnpj"), rs.getString("cnpj"));
+        }, id, id);
+    }
+
+    public List<Registro> listarQuartos(Long id) {
+        return jdbcTemplate.query("""
+                    SELECT q.id, q.descricao, c.categoria
+                    FROM quarto q
+                    LEFT JOIN categoria c ON q.fk_categoria = c.id
+                    WHERE (?::bigint IS NULL OR q.id = ?)
+                """, (rs, i) -> new Registro(
+                Tipo.QUARTO,
+                rs.getLong("id"),
+                rs.getString("descricao"),
+                rs.getString("categoria"),
+                null
+        ), id, id);
+    }
+}
@@ -0,0 +1,79 @@
+package com.istoe.demo.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Campos que um endpoint aceita em {@code fields=}: nome no JSON, coluna no banco e tipo Java.
+ * Mantém a ordem de declaração, que é a ordem usada quando o cliente não pede campos específicos.
+ */
+public final class CamposProjecao {
+
+    private record Campo(String coluna, Class<?> tipo) { }
+
+    private final String alias;
+    private final String campoFilhos;
+    private final Map<String, Campo> campos = new LinkedHashMap<>();
+
+    /**
+     * @param alias       alias da tabela na consulta (ex.: {@code p})
+     * @param campoFilhos nome do campo que traz a lista de filhos, carregada à parte
+     */
+    CamposProjecao(String alias, String campoFilhos) {
+        this.alias = alias;
+        this.campoFilhos = campoFilhos;
+    }
+
+    CamposProjecao campo(String nome, String coluna, Class<?> tipo) {
+        campos.put(nome, new Campo(coluna, tipo));
+        return this;
+    }
+
+    /**
+     * Converte o parâmetro {@code fields} ("id,nome,cpf") na lista de campos pedidos, validando cada nome.
+     */
+    public List<String> parse(String fields) {
+        List<String> pedidos = new ArrayList<>();
+        for (String nome : fields.split(",")) {
+            String campo = nome.trim();
+            if (campo.isEmpty() || pedidos.contains(campo)) continue;
+            if (!campos.containsKey(campo) && !campo.equals(campoFilhos)) {
+                throw new IllegalArgumentException("Campo desconhecido: " + campo);
+            }
+            pedidos.add(campo);
+        }
+        if (pedidos.isEmpty()) throw new IllegalArgumentException("Informe ao menos um campo em fields.");
+        return pedidos;
+    }
+
+    boolean incluiFilhos(List<String> pedidos) {
+        return pedidos.contains(campoFilhos);
+    }
+
+    /**
+     * Lista de colunas do SELECT: sempre o {@code id} (usado para paginação e para os filhos), mais as pedidas.
+     */
+    String colunas(List<String> pedidos) {
+        StringBuilder sql = new StringBuilder(alias).append(".id");
+        for (String nome : pedidos) {
+            Campo campo = campos.get(nome);
+            if (campo == null || campo.coluna().equals("id")) continue;
+            sql.append(", ").append(alias).append('.').append(campo.coluna());
+        }
+        return sql.toString();
+    }
+
+    Map<String, Object> mapear(ResultSet rs, List<String> pedidos) throws SQLException {
+        Map<String, Object> linha = new LinkedHashMap<>();
+        for (String nome : pedidos) {
+            Campo campo = campos.get(nome);
+            // os filhos são preenchidos depois; a chave entra agora para manter a ordem pedida
+            linha.put(nome, campo != null ? rs.getObject(campo.coluna(), campo.tipo()) : List.of());
+        }
+        return linha;
+    }
+}
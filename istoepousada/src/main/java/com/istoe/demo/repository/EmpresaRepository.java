@@ -1,9 +1,10 @@
 package com.istoe.demo.repository;
 
+import com.istoe.demo.event.CadastroAlteradoEvent;
 import com.istoe.demo.response.Empresa;
 import com.istoe.demo.response.Pessoa;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -18,36 +19,102 @@ import java.util.*;
 @Repository
 public class EmpresaRepository {
 
+    /**
+     * Campos de {@link Empresa} aceitos em {@code fields=}, pelo nome usado no JSON.
+     */
+    public static final CamposProjecao CAMPOS = new CamposProjecao("e", "pessoasVinculadas")
+            .campo("id", "id", Long.class)
+            .campo("razao_social", "razao_social", String.class)
+            .campo("nome_fantasia", "nome_fantasia", String.class)
+            .campo("cnpj", "cnpj", String.class)
+            .campo("inscricao_estadual", "inscricao_estadual", String.class)
+            .campo("inscricao_municipal", "inscricao_municipal", String.class)
+            .campo("telefone", "telefone", String.class)
+            .campo("email", "email", String.class)
+            .campo("endereco", "endereco", String.class)
+            .campo("cep", "cep", String.class)
+            .campo("numero", "numero", String.class)
+            .campo("complemento", "complemento", String.class)
+            .campo("fk_pais", "fk_pais", Long.class)
+            .campo("fk_estado", "fk_estado", Long.class)
+            .campo("fk_municipio", "fk_municipio", Long.class)
+            .campo("bairro", "bairro", String.class)
+            .campo("tipo_empresa", "tipo_empresa", String.class)
+            .campo("ativa", "ativa", Boolean.class);
+
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public EmpresaRepository(JdbcTemplate jdbcTemplate) {
+    public EmpresaRepository(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
-    private final ResultSetExtractor<List<Empresa>> EMPRESA_COM_PESSOAS_EXTRACTOR = rs -> {
-        Map<Long, Empresa> empresaMap = new LinkedHashMap<>();
-        Map<Long, List<Pessoa>> pessoasPorEmpresa = new HashMap<>();
+    /**
+     * Carrega as empresas da consulta (uma linha por empresa, colunas de {@code empresa}) e depois
+     * todas as pessoas vinculadas a elas em uma única consulta por {@code = ANY(?)}.
+     */
+    private List<Empresa> carregarComPessoas(String sqlEmpresas, Object... args) {
+        List<Empresa> empresas = jdbcTemplate.query(sqlEmpresas, (rs, i) -> mapEmpresa(rs), args);
+        if (empresas.isEmpty()) return empresas;
 
-        while (rs.next()) {
-            Long empresaId = rs.getLong("id");
+        FilhosPorId<Pessoa> pessoas = pessoasDe(empresas.stream().mapToLong(Empresa::id).toArray());
 
-            if (!empresaMap.containsKey(empresaId)) {
-                Empresa empresa = mapEmpresa(rs);
-                empresaMap.put(empresaId, empresa);
-                pessoasPorEmpresa.put(empresaId, new ArrayList<>());
-            }
+        List<Empresa> resultado = new ArrayList<>(empresas.size());
+        for (Empresa empresa : empresas) {
+            resultado.add(empresa.withPessoas(pessoas.de(empresa.id())));
+        }
+        return resultado;
+    }
+
+    private FilhosPorId<Pessoa> pessoasDe(long[] empresaIds) {
+        FilhosPorId<Pessoa> pessoas = new FilhosPorId<>(empresaIds);
+        if (empresaIds.length == 0) return pessoas;
+
+        jdbcTemplate.query("""
+            SELECT
+                ep.fk_empresa as vinculo_empresa_id,
+                p.*
+            FROM empresa_pessoa ep
+            JOIN pessoa p ON ep.fk_pessoa = p.id
+            WHERE ep.fk_empresa = ANY (?)
+            ORDER BY p.nome
+        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", pessoas.idsParaConsulta())),
+                rs -> {
+                    pessoas.adicionar(rs.getLong("vinculo_empresa_id"), mapPessoa(rs, ""));
+                });
+        return pessoas;
+    }
 
-            Long pessoaId = rs.getObject("pessoa_id", Long.class);
-            if (pessoaId != null) {
-                Pessoa pessoa = mapPessoa(rs, "pessoa_");
-                pessoasPorEmpresa.get(empresaId).add(pessoa);
+    /**
+     * Empresas em ordem de razão social com apenas os campos pedidos, opcionalmente filtradas
+     * por nome ou CNPJ. As pessoas só são consultadas quando {@code pessoasVinculadas} está entre os campos.
+     */
+    public List<Map<String, Object>> findCampos(List<String> campos, String termo) {
+        String sql = """
+            SELECT %s
+            FROM empresa e
+            WHERE ?::text IS NULL
+               OR e.razao_social ILIKE ? OR e.nome_fantasia ILIKE ? OR e.cnpj = ?
+            ORDER BY e.razao_social
+        """.formatted(CAMPOS.colunas(campos));
+
+        String search = termo != null ? "%" + termo + "%" : null;
+        List<Long> ids = new ArrayList<>();
+        List<Map<String, Object>> linhas = jdbcTemplate.query(sql, (rs, i) -> {
+            ids.add(rs.getLong("id"));
+            return CAMPOS.mapear(rs, campos);
+        }, termo, search, search, termo);
+
+        if (CAMPOS.incluiFilhos(campos) && !ids.isEmpty()) {
+            FilhosPorId<Pessoa> pessoas = pessoasDe(ids.stream().mapToLong(Long::longValue).toArray());
+            for (int i = 0; i < linhas.size(); i++) {
+                linhas.get(i).put("pessoasVinculadas", pessoas.de(ids.get(i)));
             }
         }
-
-        return empresaMap.entrySet().stream()
-                .map(entry -> entry.getValue().withPessoas(pessoasPorEmpresa.get(entry.getKey())))
-                .toList();
-    };
+        return linhas;
+    }
 
     private Empresa mapEmpresa(ResultSet rs) throws SQLException {
         return new Empresa(
@@ -103,181 +170,47 @@ public class EmpresaRepository {
     }
 
     public Optional<Empresa> findById(Long id) {
-        String sql = """
-            SELECT
-                e.*,
-                p.id as pessoa_id,
-                p.data_hora_cadastro as pessoa_data_hora_cadastro,
-                p.nome as pessoa_nome,
-                p.data_nascimento as pessoa_data_nascimento,
-                p.cpf as pessoa_cpf,
-                p.rg as pessoa_rg,
-                p.email as pessoa_email,
-                p.telefone as pessoa_telefone,
-                p.fk_pais as pessoa_fk_pais,
-                p.fk_estado as pessoa_fk_estado,
-                p.fk_municipio as pessoa_fk_municipio,
-                p.endereco as pessoa_endereco,
-                p.complemento as pessoa_complemento,
-                p.hospedado as pessoa_hospedado,
-                p.vezes_hospedado as pessoa_vezes_hospedado,
-                p.cliente_novo as pessoa_cliente_novo,
-                p.cep as pessoa_cep,
-                p.idade as pessoa_idade,
-                p.bairro as pessoa_bairro,
-                p.sexo as pessoa_sexo,
-                p.numero as pessoa_numero
-            FROM empresa e
-            LEFT JOIN empresa_pessoa ep ON e.id = ep.fk_empresa
-            LEFT JOIN pessoa p ON ep.fk_pessoa = p.id
-            WHERE e.id = ?
-            ORDER BY p.nome
-        """;
+        String sql = "SELECT e.* FROM empresa e WHERE e.id = ?";
 
-        List<Empresa> empresas = jdbcTemplate.query(sql, EMPRESA_COM_PESSOAS_EXTRACTOR, id);
+        List<Empresa> empresas = carregarComPessoas(sql, id);
         return empresas.isEmpty() ? Optional.empty() : Optional.of(empresas.get(0));
     }
 
     public List<Empresa> findByNome(String nome) {
         String sql = """
-            SELECT 
-                e.*,
-                p.id as pessoa_id,
-                p.data_hora_cadastro as pessoa_data_hora_cadastro,
-                p.nome as pessoa_nome,
-                p.data_nascimento as pessoa_data_nascimento,
-                p.cpf as pessoa_cpf,
-                p.rg as pessoa_rg,
-                p.email as pessoa_email,
-                p.telefone as pessoa_telefone,
-                p.fk_pais as pessoa_fk_pais,
-                p.fk_estado as pessoa_fk_estado,
-                p.fk_municipio as pessoa_fk_municipio,
-                p.endereco as pessoa_endereco,
-                p.complemento as pessoa_complemento,
-                p.hospedado as pessoa_hospedado,
-                p.vezes_hospedado as pessoa_vezes_hospedado,
-                p.cliente_novo as pessoa_cliente_novo,
-                p.cep as pessoa_cep,
-                p.idade as pessoa_idade,
-                p.bairro as pessoa_bairro,
-                p.sexo as pessoa_sexo,
-                p.numero as pessoa_numero
+            SELECT e.*
             FROM empresa e
-            LEFT JOIN empresa_pessoa ep ON e.id = ep.fk_empresa
-            LEFT JOIN pessoa p ON ep.fk_pessoa = p.id
             WHERE e.razao_social ILIKE ? OR e.nome_fantasia ILIKE ?
-            ORDER BY e.razao_social, p.nome
+            ORDER BY e.razao_social
         """;
 
         String search = "%" + nome + "%";
-        return jdbcTemplate.query(sql, EMPRESA_COM_PESSOAS_EXTRACTOR, search, search);
+        return carregarComPessoas(sql, search, search);
     }
 
     public Optional<Empresa> findByCnpj(String cnpj) {
-        String sql = """
-            SELECT 
-                e.*,
-                p.id as pessoa_id,
-                p.data_hora_cadastro as pessoa_data_hora_cadastro,
-                p.nome as pessoa_nome,
-                p.data_nascimento as pessoa_data_nascimento,
-                p.cpf as pessoa_cpf,
-                p.rg as pessoa_rg,
-                p.email as pessoa_email,
-                p.telefone as pessoa_telefone,
-                p.fk_pais as pessoa_fk_pais,
-                p.fk_estado as pessoa_fk_estado,
-                p.fk_municipio as pessoa_fk_municipio,
-                p.endereco as pessoa_endereco,
-                p.complemento as pessoa_complemento,
-                p.hospedado as pessoa_hospedado,
-                p.vezes_hospedado as pessoa_vezes_hospedado,
-                p.cliente_novo as pessoa_cliente_novo,
-                p.cep as pessoa_cep,
-                p.idade as pessoa_idade,
-                p.bairro as pessoa_bairro,
-                p.sexo as pessoa_sexo,
-                p.numero as pessoa_numero
-            FROM empresa e
-            LEFT JOIN empresa_pessoa ep ON e.id = ep.fk_empresa
-            LEFT JOIN pessoa p ON ep.fk_pessoa = p.id
-            WHERE e.cnpj = ?
-            ORDER BY p.nome
-        """;
+        String sql = "SELECT e.* FROM empresa e WHERE e.cnpj = ?";
 
-        List<Empresa> empresas = jdbcTemplate.query(sql, EMPRESA_COM_PESSOAS_EXTRACTOR, cnpj);
+        List<Empresa> empresas = carregarComPessoas(sql, cnpj);
         return empresas.isEmpty() ? Optional.empty() : Optional.of(empresas.get(0));
     }
 
     public List<Empresa> findByNomeOrCnpj(String termo) {
         String sql = """
-            SELECT 
-                e.*,
-                p.id as pessoa_id,
-                p.data_hora_cadastro as pessoa_data_hora_cadastro,
-                p.nome as pessoa_nome,
-                p.data_nascimento as pessoa_data_nascimento,
-                p.cpf as pessoa_cpf,
-                p.rg as pessoa_rg,
-                p.email as pessoa_email,
-                p.telefone as pessoa_telefone,
-                p.fk_pais as pessoa_fk_pais,
-                p.fk_estado as pessoa_fk_estado,
-                p.fk_municipio as pessoa_fk_municipio,
-                p.endereco as pessoa_endereco,
-                p.complemento as pessoa_complemento,
-                p.hospedado as pessoa_hospedado,
-                p.vezes_hospedado as pessoa_vezes_hospedado,
-                p.cliente_novo as pessoa_cliente_novo,
-                p.cep as pessoa_cep,
-                p.idade as pessoa_idade,
-                p.bairro as pessoa_bairro,
-                p.sexo as pessoa_sexo,
-                p.numero as pessoa_numero
+            SELECT e.*
             FROM empresa e
-            LEFT JOIN empresa_pessoa ep ON e.id = ep.fk_empresa
-            LEFT JOIN pessoa p ON ep.fk_pessoa = p.id
             WHERE e.razao_social ILIKE ? OR e.nome_fantasia ILIKE ? OR e.cnpj = ?
-            ORDER BY e.razao_social, p.nome
+            ORDER BY e.razao_social
         """;
 
         String search = "%" + termo + "%";
-        return jdbcTemplate.query(sql, EMPRESA_COM_PESSOAS_EXTRACTOR, search, search, termo);
+        return carregarComPessoas(sql, search, search, termo);
     }
 
     public List<Empresa> findAll() {
-        String sql = """
-            SELECT 
-                e.*,
-                p.id as pessoa_id,
-                p.data_hora_cadastro as pessoa_data_hora_cadastro,
-                p.nome as pessoa_nome,
-                p.data_nascimento as pessoa_data_nascimento,
-                p.cpf as pessoa_cpf,
-                p.rg as pessoa_rg,
-                p.email as pessoa_email,
-                p.telefone as pessoa_telefone,
-                p.fk_pais as pessoa_fk_pais,
-                p.fk_estado as pessoa_fk_estado,
-                p.fk_municipio as pessoa_fk_municipio,
-                p.endereco as pessoa_endereco,
-                p.complemento as pessoa_complemento,
-                p.hospedado as pessoa_hospedado,
-                p.vezes_hospedado as pessoa_vezes_hospedado,
-                p.cliente_novo as pessoa_cliente_novo,
-                p.cep as pessoa_cep,
-                p.idade as pessoa_idade,
-                p.bairro as pessoa_bairro,
-                p.sexo as pessoa_sexo,
-                p.numero as pessoa_numero
-            FROM empresa e
-            LEFT JOIN empresa_pessoa ep ON e.id = ep.fk_empresa
-            LEFT JOIN pessoa p ON ep.fk_pessoa = p.id
-            ORDER BY e.razao_social, p.nome
-        """;
+        String sql = "SELECT e.* FROM empresa e ORDER BY e.razao_social";
 
-        return jdbcTemplate.query(sql, EMPRESA_COM_PESSOAS_EXTRACTOR);
+        return carregarComPessoas(sql);
     }
 
     @Transactional
@@ -325,6 +258,7 @@ public class EmpresaRepository {
         }, keyHolder);
 
         Long generatedId = keyHolder.getKey().longValue();
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.EMPRESA, generatedId));
         return findById(generatedId).orElse(empresa.withId(generatedId));
     }
 
@@ -360,6 +294,7 @@ public class EmpresaRepository {
                 empresa.ativa(),
                 empresa.id()
         );
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.EMPRESA, empresa.id()));
     }
 
     @Transactional
@@ -373,6 +308,41 @@ public class EmpresaRepository {
         jdbcTemplate.batchUpdate(sql, batchArgs);
     }
 
+    /**
+     * Substitui o quadro de pessoas da empresa pelo conjunto informado: um DELETE remove quem
+     * saiu e um INSERT ... SELECT unnest inclui quem entrou, sem tocar nos vínculos mantidos.
+     */
+    @Transactional
+    public VinculosSubstituidos substituirPessoas(Long empresaId, Collection<Long> pessoaIds) {
+        Object[] ids = pessoaIds.toArray();
+
+        int removidos = jdbcTemplate.update("""
+            DELETE FROM empresa_pessoa
+            WHERE fk_empresa = ? AND NOT (fk_pessoa = ANY (?))
+        """, ps -> {
+            ps.setLong(1, empresaId);
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+        });
+
+        int adicionados = jdbcTemplate.update("""
+            INSERT INTO empresa_pessoa (fk_empresa, fk_pessoa)
+            SELECT ?, novo.id FROM unnest(?::bigint[]) AS novo(id)
+            ON CONFLICT DO NOTHING
+        """, ps -> {
+            ps.setLong(1, empresaId);
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+        });
+
+        return new VinculosSubstituidos(adicionados, removidos);
+    }
+
+    public record VinculosSubstituidos(int adicionados, int removidos) { }
+
+    public boolean existsById(Long id) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM empresa WHERE id = ?", Integer.class, id);
+        return count != null && count > 0;
+    }
+
     @Transactional
     public void desvincularPessoa(Long empresaId, Long pessoaId) {
         String sql = "DELETE FROM empresa_pessoa WHERE fk_empresa = ? AND fk_pessoa = ?";
@@ -390,5 +360,6 @@ public class EmpresaRepository {
         desvincularTodasPessoas(id);
         String sql = "DELETE FROM empresa WHERE id = ?";
         jdbcTemplate.update(sql, id);
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.EMPRESA, id));
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.istoe.demo.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Agrupa os filhos carregados em lote pelo ID do pai. Os IDs ficam em um {@code long[]} ordenado
+ * e a busca é binária, sem criar um {@code Long} por linha lida.
+ */
+final class FilhosPorId<T> {
+
+    private final long[] ids;
+    private final List<T>[] filhos;
+
+    @SuppressWarnings("unchecked")
+    FilhosPorId(long[] idsPais) {
+        this.ids = Arrays.stream(idsPais).distinct().sorted().toArray();
+        this.filhos = new List[ids.length];
+    }
+
+    /**
+     * IDs dos pais no formato aceito por {@code Connection.createArrayOf("bigint", ...)}.
+     */
+    Object[] idsParaConsulta() {
+        return Arrays.stream(ids).boxed().toArray();
+    }
+
+    void adicionar(long idPai, T filho) {
+        int i = Arrays.binarySearch(ids, idPai);
+        if (i < 0) return;
+        if (filhos[i] == null) filhos[i] = new ArrayList<>();
+        filhos[i].add(filho);
+    }
+
+    List<T> de(long idPai) {
+        int i = Arrays.binarySearch(ids, idPai);
+        return i < 0 || filhos[i] == null ? List.of() : filhos[i];
+    }
+}
@@ -5,24 +5,59 @@ import com.istoe.demo.enums.StatusPernoiteEnum;
 import com.istoe.demo.request.CreatePernoiteRequest;
 import com.istoe.demo.request.HospedeRequest;
 import com.istoe.demo.request.PagamentoRequest;
+import com.istoe.demo.response.PernoiteResumoResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 @Repository
 public class PernoiteRepository {
 
+    private static final Logger log = LoggerFactory.getLogger(PernoiteRepository.class);
+
+    /** Primeira chave dos advisory locks de quarto (pg_advisory_xact_lock(int, int)). */
+    private static final int LOCK_NAMESPACE_QUARTO = 1001;
+    private static final int FETCH_SIZE_EXPORTACAO = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     public PernoiteRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public Long adicionarPernoite(CreatePernoiteRequest request) {
+    public Long adicionarPernoite(CreatePernoiteRequest request, double valorPorPessoa) {
+        List<HospedeRequest> hospedes = request.hospedes() != null ? request.hospedes() : List.of();
+        List<PagamentoRequest> pagamentos = request.pagamentoRequestList() != null
+                ? request.pagamentoRequestList() : List.of();
+
+        long qtdRepresentantes = hospedes.stream()
+                .filter(HospedeRequest::representante)
+                .count();
+
+        if (qtdRepresentantes > 1) {
+            throw new IllegalArgumentException("Apenas um hóspede pode ser o representante do pernoite.");
+        }
+
+        int qtdPessoas = hospedes.size();
+        int roundTrips = 0;
+
+        long qtdDiarias = request.dataEntrada().isBefore(request.dataSaida())
+                ? ChronoUnit.DAYS.between(request.dataEntrada(), request.dataSaida())
+                : 0;
+        double totalPernoite = valorPorPessoa * qtdDiarias;
+
         String sqlPernoite = """
                     INSERT INTO pernoite (
                         quarto_id,
@@ -31,9 +66,10 @@ public class PernoiteRepository {
                         hora_chegada,
                         hora_saida,
                         status_pernoite_enum,
-                        ativo
+                        ativo,
+                        valot_total
                     )
-                    VALUES (?, ?, ?, ?, ?, 0, TRUE)
+                    VALUES (?, ?, ?, ?, ?, 0, TRUE, ?)
                     RETURNING id
                 """;
 
@@ -44,97 +80,361 @@ public class PernoiteRepository {
                 request.dataEntrada(),
                 request.dataSaida(),
                 request.horaChegada(),
-                request.horaSaida()
+                request.horaSaida(),
+                totalPernoite
         );
+        roundTrips++;
 
-        Long fkCategoria = jdbcTemplate.queryForObject(
-                "SELECT fk_categoria FROM quarto WHERE id = ?",
-                Long.class,
+        List<Long> diariaIds = qtdDiarias == 0 ? List.of() : inserirDiarias(
+                pernoiteId,
+                request.dataEntrada(),
+                request.dataSaida(),
+                valorPorPessoa,
+                qtdPessoas,
+                1,
                 request.quarto()
         );
+        if (qtdDiarias > 0) roundTrips++;
 
-        long categoriaId = fkCategoria == null ? 0 : fkCategoria;
-        int qtdPessoas = request.hospedes().size();
-
-        Double valorPorPessoa = jdbcTemplate.query(
-                """
-                        SELECT valor FROM preco_pessoa_categoria
-                        WHERE fk_categoria = ? AND qtd_pessoa = ?
-                        """,
-                ps -> {
-                    ps.setLong(1, categoriaId);
-                    ps.setInt(2, qtdPessoas);
-                },
-                rs -> rs.next() ? rs.getDouble("valor") : null
-        );
+        if (!diariaIds.isEmpty() && !hospedes.isEmpty()) {
+            List<Object[]> batchHospedes = new ArrayList<>(diariaIds.size() * hospedes.size());
+            for (Long diariaId : diariaIds) {
+                for (HospedeRequest h : hospedes) {
+                    batchHospedes.add(new Object[]{diariaId, h.id(), h.representante()});
+                }
+            }
+            inserirHospedes(batchHospedes);
+            roundTrips++;
+        }
 
-        if (valorPorPessoa == null) valorPorPessoa = 0D;
+        if (!diariaIds.isEmpty() && !pagamentos.isEmpty()) {
+            lancarPagamentos(diariaIds, pagamentos);
+            roundTrips++;
+        }
 
-        LocalDate dataInicio = request.dataEntrada();
-        LocalDate dataFim = request.dataSaida();
-        double totalPernoite = 0.0;
-        int numeroDiaria = 1;
+        log.debug("Check-in do pernoite {}: {} diárias, {} hóspedes, {} round trips",
+                pernoiteId, diariaIds.size(), qtdPessoas, roundTrips);
 
-        while (dataInicio.isBefore(dataFim)) {
-            LocalDate dataFimDiaria = dataInicio.plusDays(1);
+        return pernoiteId;
+    }
 
-            Long diariaId = inserirDiaria(
-                    pernoiteId,
-                    dataInicio,
-                    dataFimDiaria,
-                    valorPorPessoa,
-                    qtdPessoas,
-                    numeroDiaria,
-                    request.quarto()
-            );
+    /**
+     * Check-in de grupo: grava todos os pernoites, diárias, hóspedes e pagamentos com
+     * batch updates, em um número fixo de round trips independente do tamanho do grupo.
+     * As requisições já devem ter sido validadas e os quartos bloqueados.
+     *
+     * @param valoresDiaria valor da diária de cada requisição, na mesma ordem
+     * @return os IDs dos pernoites criados, na mesma ordem das requisições
+     */
+    public List<Long> adicionarPernoitesEmLote(List<CreatePernoiteRequest> requests, double[] valoresDiaria) {
+        KeyHolder pernoiteKeys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                conn -> conn.prepareStatement("""
+                            INSERT INTO pernoite (
+                                quarto_id,
+                                data_entrada,
+                                data_saida,
+                                hora_chegada,
+                                hora_saida,
+                                status_pernoite_enum,
+                                ativo,
+                                valot_total
+                            )
+                            VALUES (?, ?, ?, ?, ?, 0, TRUE, ?)
+                        """, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        CreatePernoiteRequest r = requests.get(i);
+                        long noites = Math.max(0, ChronoUnit.DAYS.between(r.dataEntrada(), r.dataSaida()));
+                        ps.setLong(1, r.quarto());
+                        ps.setObject(2, r.dataEntrada());
+                        ps.setObject(3, r.dataSaida());
+                        ps.setObject(4, r.horaChegada());
+                        ps.setObject(5, r.horaSaida());
+                        ps.setDouble(6, valoresDiaria[i] * noites);
+                    }
 
-            totalPernoite += valorPorPessoa;
+                    @Override
+                    public int getBatchSize() {
+                        return requests.size();
+                    }
+                },
+                pernoiteKeys
+        );
 
-            if (!request.hospedes().isEmpty()) {
-                long qtdRepresentantes = request.hospedes().stream()
-                        .filter(HospedeRequest::representante)
-                        .count();
+        List<Long> pernoiteIds = pernoiteKeys.getKeyList().stream()
+                .map(k -> ((Number) k.get("id")).longValue())
+                .toList();
+
+        // uma linha por noite de cada pernoite; guarda a requisição de origem e a posição da noite
+        // para hóspedes (em todas as noites) e pagamentos (só na primeira)
+        List<Object[]> diarias = new ArrayList<>();
+        List<Integer> origemDiaria = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CreatePernoiteRequest r = requests.get(i);
+            int qtdPessoas = r.hospedes() != null ? r.hospedes().size() : 0;
+            int numero = 1;
+            for (LocalDate dia = r.dataEntrada(); dia.isBefore(r.dataSaida()); dia = dia.plusDays(1)) {
+                diarias.add(new Object[]{dia, dia.plusDays(1), valoresDiaria[i], pernoiteIds.get(i),
+                        valoresDiaria[i], numero++, qtdPessoas, r.quarto()});
+                origemDiaria.add(i);
+            }
+        }
 
-                if (qtdRepresentantes > 1) {
-                    throw new IllegalArgumentException("Apenas um hóspede pode ser o representante do pernoite.");
-                }
+        if (diarias.isEmpty()) return pernoiteIds;
+
+        KeyHolder diariaKeys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                conn -> conn.prepareStatement("""
+                            INSERT INTO diaria (
+                                data_inicio,
+                                data_fim,
+                                valor_diaria,
+                                pernoite_id,
+                                total,
+                                numero_diaria,
+                                quantidade_pessoa,
+                                quarto_id
+                            )
+                            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                        """, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Object[] linha = diarias.get(i);
+                        for (int c = 0; c < linha.length; c++) ps.setObject(c + 1, linha[c]);
+                    }
 
-                for (HospedeRequest h : request.hospedes()) {
-                    jdbcTemplate.update("""
-                                INSERT INTO diaria_hospedes (diaria_id, hospedes_id, representante)
-                                VALUES (?, ?, ?)
-                                ON CONFLICT DO NOTHING
-                            """, diariaId, h.id(), h.representante());
-                }
-            }
+                    @Override
+                    public int getBatchSize() {
+                        return diarias.size();
+                    }
+                },
+                diariaKeys
+        );
 
+        List<Map<String, Object>> diariaIds = diariaKeys.getKeyList();
+        List<Object[]> batchHospedes = new ArrayList<>();
+        List<Object[]> batchPagamentos = new ArrayList<>();
+        for (int d = 0; d < diariaIds.size(); d++) {
+            long diariaId = ((Number) diariaIds.get(d).get("id")).longValue();
+            CreatePernoiteRequest r = requests.get(origemDiaria.get(d));
 
-            if (request.pagamentoRequestList() != null) {
-                for (PagamentoRequest p : request.pagamentoRequestList()) {
-                    jdbcTemplate.update("""
-                                INSERT INTO diaria_pagamento (
-                                    valor,
-                                    diaria_id,
-                                    data_hora_pagamento,
-                                    tipo_pagamento_id
-                                )
-                                VALUES (?, ?, now(), ?)
-                            """, p.valorPagamento(), diariaId, p.tipoPagamento());
+            if (r.hospedes() != null) {
+                for (HospedeRequest h : r.hospedes()) {
+                    batchHospedes.add(new Object[]{diariaId, h.id(), h.representante()});
+                }
+            }
+            boolean primeiraNoite = d == 0 || !origemDiaria.get(d - 1).equals(origemDiaria.get(d));
+            if (primeiraNoite && r.pagamentoRequestList() != null) {
+                for (PagamentoRequest p : r.pagamentoRequestList()) {
+                    batchPagamentos.add(new Object[]{p.valorPagamento(), diariaId, p.tipoPagamento()});
                 }
             }
+        }
+
+        inserirHospedes(batchHospedes);
+        inserirPagamentos(batchPagamentos);
 
+        log.debug("Check-in de grupo: {} pernoites, {} diárias", pernoiteIds.size(), diariaIds.size());
 
-            dataInicio = dataInicio.plusDays(1);
-            numeroDiaria++;
+        return pernoiteIds;
+    }
+
+    private void inserirHospedes(List<Object[]> batchHospedes) {
+        if (batchHospedes.isEmpty()) return;
+        jdbcTemplate.batchUpdate("""
+                    INSERT INTO diaria_hospedes (diaria_id, hospedes_id, representante)
+                    VALUES (?, ?, ?)
+                    ON CONFLICT DO NOTHING
+                """, batchHospedes);
+    }
+
+    private void inserirPagamentos(List<Object[]> batchPagamentos) {
+        if (batchPagamentos.isEmpty()) return;
+        jdbcTemplate.batchUpdate("""
+                    INSERT INTO diaria_pagamento (
+                        valor,
+                        diaria_id,
+                        data_hora_pagamento,
+                        tipo_pagamento_id
+                    )
+                    VALUES (?, ?, now(), ?)
+                """, batchPagamentos);
+    }
+
+    /**
+     * Check-in de longa permanência: grava apenas o pernoite (com a tarifa da diária e o período)
+     * e os hóspedes em {@code pernoite_hospedes}. As diárias são materializadas agora até hoje (e ao menos
+     * a primeira noite, se a entrada for futura) e, depois, pelo job diário. Os pagamentos do check-in
+     * ficam na primeira diária.
+     */
+    public Long adicionarPernoiteLongaPermanencia(CreatePernoiteRequest request, double valorDiaria) {
+        List<HospedeRequest> hospedes = request.hospedes() != null ? request.hospedes() : List.of();
+        long noites = ChronoUnit.DAYS.between(request.dataEntrada(), request.dataSaida());
+
+        Long pernoiteId = jdbcTemplate.queryForObject("""
+                    INSERT INTO pernoite (
+                        quarto_id,
+                        data_entrada,
+                        data_saida,
+                        hora_chegada,
+                        hora_saida,
+                        status_pernoite_enum,
+                        ativo,
+                        valot_total,
+                        longa_permanencia,
+                        valor_diaria
+                    )
+                    VALUES (?, ?, ?, ?, ?, 0, TRUE, ?, TRUE, ?)
+                    RETURNING id
+                """,
+                Long.class,
+                request.quarto(),
+                request.dataEntrada(),
+                request.dataSaida(),
+                request.horaChegada(),
+                request.horaSaida(),
+                valorDiaria * noites,
+                valorDiaria
+        );
+
+        atualizarHospedesLongaPermanencia(pernoiteId, hospedes);
+        // ao menos a primeira noite, mesmo com entrada futura: é nela que ficam os pagamentos do check-in
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        LocalDate segundaNoite = request.dataEntrada().plusDays(1);
+        materializarDiarias(pernoiteId, amanha.isAfter(segundaNoite) ? amanha : segundaNoite);
+
+        if (request.pagamentoRequestList() != null && !request.pagamentoRequestList().isEmpty()) {
+            List<Long> primeiraDiaria = jdbcTemplate.queryForList(
+                    "SELECT id FROM diaria WHERE pernoite_id = ? AND numero_diaria = 1 AND NOT cancelada",
+                    Long.class, pernoiteId);
+            lancarPagamentos(primeiraDiaria, request.pagamentoRequestList());
+        }
+
+        return pernoiteId;
+    }
+
+    /**
+     * Cria as diárias que faltam dos pernoites de longa permanência ativos, da entrada até a véspera
+     * de {@code ate} (exclusivo) ou até a data de saída, o que vier antes, com a tarifa do check-in.
+     * Os hóspedes de {@code pernoite_hospedes} são copiados para cada diária nova no mesmo comando.
+     * Idempotente: noites já materializadas são ignoradas.
+     *
+     * @param pernoiteId restringe a um pernoite; {@code null} processa todos
+     * @return quantidade de diárias criadas
+     */
+    public int materializarDiarias(Long pernoiteId, LocalDate ate) {
+        Integer criadas = jdbcTemplate.queryForObject("""
+                    WITH alvo AS (
+                        SELECT p.id, p.quarto_id, p.data_entrada, p.data_saida, p.valor_diaria,
+                               (SELECT COUNT(*) FROM pernoite_hospedes ph WHERE ph.pernoite_id = p.id) AS qtd_pessoas
+                        FROM pernoite p
+                        WHERE p.longa_permanencia
+                          AND p.ativo
+                          AND (?::bigint IS NULL OR p.id = ?)
+                    ),
+                    novas AS (
+                        INSERT INTO diaria (
+                            data_inicio,
+                            data_fim,
+                            valor_diaria,
+                            pernoite_id,
+                            total,
+                            numero_diaria,
+                            quantidade_pessoa,
+                            quarto_id
+                        )
+                        SELECT g.dia::date,
+                               g.dia::date + 1,
+                               a.valor_diaria,
+                               a.id,
+                               a.valor_diaria,
+                               (g.dia::date - a.data_entrada) + 1,
+                               a.qtd_pessoas,
+                               a.quarto_id
+                        FROM alvo a
+                        CROSS JOIN LATERAL generate_series(a.data_entrada, LEAST(?::date, a.data_saida) - 1,
+                                                           INTERVAL '1 day') AS g(dia)
+                        -- noites de prorrogação já são gravadas na hora, então pode haver lacunas antes delas
+                        WHERE NOT EXISTS (
+                            SELECT 1 FROM diaria d
+                            WHERE d.pernoite_id = a.id AND d.data_inicio = g.dia::date AND NOT d.cancelada
+                        )
+                        ON CONFLICT DO NOTHING
+                        RETURNING id, pernoite_id
+                    ),
+                    hospedes AS (
+                        INSERT INTO diaria_hospedes (diaria_id, hospedes_id, representante)
+                        SELECT n.id, ph.hospedes_id, ph.representante
+                        FROM novas n
+                        JOIN pernoite_hospedes ph ON ph.pernoite_id = n.pernoite_id
+                        ON CONFLICT DO NOTHING
+                    )
+                    SELECT COUNT(*) FROM novas
+                """, Integer.class, pernoiteId, pernoiteId, ate);
+        return criadas != null ? criadas : 0;
+    }
+
+    public boolean isLongaPermanencia(Long pernoiteId) {
+        Boolean longa = jdbcTemplate.query(
+                "SELECT longa_permanencia FROM pernoite WHERE id = ?",
+                rs -> rs.next() ? rs.getBoolean("longa_permanencia") : null,
+                pernoiteId);
+        return Boolean.TRUE.equals(longa);
+    }
+
+    /**
+     * Prorroga uma longa permanência com as mesmas regras da prorrogação comum: as noites novas,
+     * a partir de {@code novaDataInicio} e nunca antes da saída atual, são gravadas na hora com a
+     * tarifa informada, e a primeira delas recebe os pagamentos. As noites do período original
+     * continuam sendo materializadas com a tarifa do check-in. Hóspedes informados passam a valer
+     * para o pernoite todo.
+     */
+    public void prorrogarLongaPermanencia(Long pernoiteId,
+                                          LocalDate novaDataInicio,
+                                          LocalDate novaDataFim,
+                                          Long quartoId,
+                                          List<HospedeRequest> hospedes,
+                                          List<PagamentoRequest> pagamentos,
+                                          double valorDiaria) {
+        if (hospedes != null && !hospedes.isEmpty()) {
+            atualizarHospedesLongaPermanencia(pernoiteId, hospedes);
         }
 
+        int qtdPessoas = hospedes != null ? hospedes.size() : 1;
+        List<Long> diariaIds = inserirDiariasProrrogacao(
+                pernoiteId, novaDataInicio, novaDataFim, quartoId, qtdPessoas, valorDiaria);
+
+        if (!diariaIds.isEmpty()) {
+            jdbcTemplate.update("""
+                        INSERT INTO diaria_hospedes (diaria_id, hospedes_id, representante)
+                        SELECT d.id, ph.hospedes_id, ph.representante
+                        FROM diaria d
+                        JOIN pernoite_hospedes ph ON ph.pernoite_id = d.pernoite_id
+                        WHERE d.id = ANY (?)
+                        ON CONFLICT DO NOTHING
+                    """, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", diariaIds.toArray())));
+        }
+        lancarPagamentos(diariaIds, pagamentos);
+
         jdbcTemplate.update("""
                     UPDATE pernoite
-                    SET valot_total = ?
+                    SET data_saida = GREATEST(data_saida, ?::date), valot_total = COALESCE(valot_total, 0) + ?
                     WHERE id = ?
-                """, totalPernoite, pernoiteId);
+                """, novaDataFim, valorDiaria * diariaIds.size(), pernoiteId);
+    }
 
-        return pernoiteId;
+    private void atualizarHospedesLongaPermanencia(Long pernoiteId, List<HospedeRequest> hospedes) {
+        if (hospedes.isEmpty()) return;
+        jdbcTemplate.batchUpdate("""
+                    INSERT INTO pernoite_hospedes (pernoite_id, hospedes_id, representante)
+                    VALUES (?, ?, ?)
+                    ON CONFLICT (pernoite_id, hospedes_id) DO UPDATE SET representante = EXCLUDED.representante
+                """, hospedes.stream()
+                .map(h -> new Object[]{pernoiteId, h.id(), h.representante()})
+                .toList());
     }
 
     public void adicionarDiariasAoPernoite(
@@ -143,7 +443,8 @@ public class PernoiteRepository {
             LocalDate novaDataFim,
             Long quartoId,
             List<HospedeRequest> hospedes,
-            List<PagamentoRequest> pagamentos
+            List<PagamentoRequest> pagamentos,
+            double valorDiaria
     ) {
         if (pernoiteId == null || quartoId == null)
             throw new IllegalArgumentException("ID do pernoite e do quarto são obrigatórios.");
@@ -163,124 +464,118 @@ public class PernoiteRepository {
             throw new IllegalStateException("O quarto informado está indisponível para novas diárias.");
         }
 
-        LocalDate ultimaDataFim = jdbcTemplate.queryForObject("""
-                    SELECT MAX(data_fim) FROM diaria WHERE pernoite_id = ?
-                """, LocalDate.class, pernoiteId);
-
-        int numeroProxima = jdbcTemplate.queryForObject("""
-                    SELECT COALESCE(MAX(numero_diaria), 0) + 1 FROM diaria WHERE pernoite_id = ?
-                """, Integer.class, pernoiteId);
-
-        Long categoriaId = jdbcTemplate.queryForObject("""
-                    SELECT fk_categoria FROM quarto WHERE id = ?
-                """, Long.class, quartoId);
-
         int qtdPessoas = hospedes != null ? hospedes.size() : 1;
-
-        Double valorDiaria = jdbcTemplate.query(
-                """
-                        SELECT valor FROM preco_pessoa_categoria
-                        WHERE fk_categoria = ? AND qtd_pessoa = ?
-                        """,
-                ps -> {
-                    ps.setLong(1, categoriaId);
-                    ps.setInt(2, qtdPessoas);
-                },
-                rs -> rs.next() ? rs.getDouble("valor") : null
-        );
-
-        if (valorDiaria == null) valorDiaria = 0D;
-
-        double totalAdicionado = 0.0;
-        LocalDate dataAtual = novaDataInicio;
-
-        while (dataAtual.isBefore(novaDataFim)) {
-            LocalDate dataFimDiaria = dataAtual.plusDays(1);
-
-            Boolean existe = jdbcTemplate.queryForObject("""
-                        SELECT COUNT(*) > 0
-                        FROM diaria
-                        WHERE pernoite_id = ?
-                          AND data_inicio = ?
-                    """, Boolean.class, pernoiteId, Date.valueOf(dataAtual));
-
-            boolean podeAdicionar = !Boolean.TRUE.equals(existe)
-                    && (ultimaDataFim == null || dataAtual.isAfter(ultimaDataFim) || dataAtual.isEqual(ultimaDataFim));
-
-            if (podeAdicionar) {
-                Long diariaId = inserirDiaria(
-                        pernoiteId,
-                        dataAtual,
-                        dataFimDiaria,
-                        valorDiaria,
-                        qtdPessoas,
-                        numeroProxima,
-                        quartoId
-                );
-
-                totalAdicionado += valorDiaria;
-
-                if (hospedes != null && !hospedes.isEmpty()) {
-                    long countRepresentantes = hospedes.stream()
-                            .filter(HospedeRequest::representante)
-                            .count();
-
-                    if (countRepresentantes > 1) {
-                        throw new IllegalArgumentException("Apenas um hóspede pode ser o representante do pernoite.");
-                    }
-
-                    for (var h : hospedes) {
-                        int rows = jdbcTemplate.update("""
-                                    UPDATE diaria_hospedes
-                                    SET representante = ?
-                                    WHERE diaria_id = ? AND hospedes_id = ?
-                                """, h.representante(), diariaId, h.id());
-
-                        if (rows == 0) {
-                            jdbcTemplate.update("""
-                                        INSERT INTO diaria_hospedes (diaria_id, hospedes_id, representante)
-                                        VALUES (?, ?, ?)
-                                    """, diariaId, h.id(), h.representante());
-                        }
-                    }
+        List<Long> diariaIds = inserirDiariasProrrogacao(
+                pernoiteId, novaDataInicio, novaDataFim, quartoId, qtdPessoas, valorDiaria);
+
+        if (!diariaIds.isEmpty() && hospedes != null && !hospedes.isEmpty()) {
+            List<Object[]> batchHospedes = new ArrayList<>(diariaIds.size() * hospedes.size());
+            for (Long diariaId : diariaIds) {
+                for (HospedeRequest h : hospedes) {
+                    batchHospedes.add(new Object[]{diariaId, h.id(), h.representante()});
                 }
-
-
-                if (pagamentos != null) {
-                    for (PagamentoRequest p : pagamentos) {
-                        jdbcTemplate.update("""
-                                    INSERT INTO diaria_pagamento (
-                                        valor,
-                                        diaria_id,
-                                        data_hora_pagamento,
-                                        tipo_pagamento_id
-                                    )
-                                    VALUES (?, ?, now(), ?)
-                                """, p.valorPagamento(), diariaId, p.tipoPagamento());
-                    }
-                }
-
-
-                numeroProxima++;
             }
-
-            dataAtual = dataAtual.plusDays(1);
+            inserirHospedes(batchHospedes);
         }
+        lancarPagamentos(diariaIds, pagamentos);
 
         jdbcTemplate.update("""
                     UPDATE pernoite
                     SET data_saida = ?, valot_total = COALESCE(valot_total, 0) + ?
                     WHERE id = ?
-                """, novaDataFim, totalAdicionado, pernoiteId);
+                """, novaDataFim, valorDiaria * diariaIds.size(), pernoiteId);
     }
 
-    private Long inserirDiaria(Long pernoiteId,
-                               LocalDate dataInicio,
-                               LocalDate dataFim,
-                               Double valor,
-                               Integer qtdPessoas,
-                               Integer numeroDiaria,
-                               Long quartoId) {
+    /**
+     * Noites de uma prorrogação: uma diária por noite de [novaDataInicio, novaDataFim), nunca antes da
+     * última diária gravada nem, em longa permanência, antes da saída atual. A numeração segue a
+     * sequência do pernoite (em longa permanência, a posição da noite desde a entrada).
+     *
+     * @return os IDs das diárias criadas
+     */
+    private List<Long> inserirDiariasProrrogacao(Long pernoiteId,
+                                                 LocalDate novaDataInicio,
+                                                 LocalDate novaDataFim,
+                                                 Long quartoId,
+                                                 int qtdPessoas,
+                                                 double valorDiaria) {
+        return jdbcTemplate.queryForList("""
+                    WITH atual AS (
+                        SELECT p.data_entrada,
+                               p.longa_permanencia,
+                               COALESCE(MAX(d.numero_diaria), 0) AS ultimo_numero,
+                               GREATEST(?::date,
+                                        COALESCE(MAX(d.data_fim), ?::date),
+                                        CASE WHEN p.longa_permanencia THEN p.data_saida END) AS primeira_data
+                        FROM pernoite p
+                        LEFT JOIN diaria d ON d.pernoite_id = p.id
+                        WHERE p.id = ?
+                        GROUP BY p.id
+                    )
+                    INSERT INTO diaria (
+                        data_inicio,
+                        data_fim,
+                        valor_diaria,
+                        pernoite_id,
+                        total,
+                        numero_diaria,
+                        quantidade_pessoa,
+                        quarto_id
+                    )
+                    SELECT g.dia::date,
+                           g.dia::date + 1,
+                           ?,
+                           ?,
+                           ?,
+                           CASE WHEN a.longa_permanencia THEN (g.dia::date - a.data_entrada) + 1
+                                ELSE a.ultimo_numero + (g.dia::date - a.primeira_data) + 1 END,
+                           ?,
+                           ?
+                    FROM atual a
+                    CROSS JOIN LATERAL generate_series(a.primeira_data, ?::date - 1, INTERVAL '1 day') AS g(dia)
+                    ORDER BY g.dia
+                    ON CONFLICT DO NOTHING
+                    RETURNING id
+                """,
+                Long.class,
+                novaDataInicio,
+                novaDataInicio,
+                pernoiteId,
+                valorDiaria,
+                pernoiteId,
+                valorDiaria,
+                qtdPessoas,
+                quartoId,
+                novaDataFim
+        );
+    }
+
+    /**
+     * Lança cada pagamento uma única vez, na primeira das diárias informadas. É a regra de todos os
+     * caminhos (check-in, check-in de grupo, longa permanência e prorrogações), para que o total pago,
+     * o extrato e a auditoria noturna somem exatamente o que foi recebido.
+     */
+    private void lancarPagamentos(List<Long> diariaIds, List<PagamentoRequest> pagamentos) {
+        if (diariaIds.isEmpty() || pagamentos == null || pagamentos.isEmpty()) return;
+
+        Long primeira = diariaIds.get(0);
+        inserirPagamentos(pagamentos.stream()
+                .map(p -> new Object[]{p.valorPagamento(), primeira, p.tipoPagamento()})
+                .toList());
+    }
+
+    /**
+     * Insere, em um único comando, uma diária para cada noite do intervalo [dataInicio, dataFim).
+     *
+     * @return os IDs das diárias criadas
+     */
+    private List<Long> inserirDiarias(Long pernoiteId,
+                                      LocalDate dataInicio,
+                                      LocalDate dataFim,
+                                      Double valor,
+                                      Integer qtdPessoas,
+                                      Integer primeiroNumero,
+                                      Long quartoId) {
         String sql = """
                     INSERT INTO diaria (
                         data_inicio,
@@ -292,140 +587,225 @@ public class PernoiteRepository {
                         quantidade_pessoa,
                         quarto_id
                     )
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                    SELECT g.dia::date,
+                           g.dia::date + 1,
+                           ?,
+                           ?,
+                           ?,
+                           ? + (g.dia::date - ?::date),
+                           ?,
+                           ?
+                    FROM generate_series(?::date, ?::date - 1, INTERVAL '1 day') AS g(dia)
+                    ORDER BY g.dia
                     RETURNING id
                 """;
 
-        return jdbcTemplate.queryForObject(
+        return jdbcTemplate.queryForList(
                 sql,
                 Long.class,
-                dataInicio,
-                dataFim,
                 valor,
                 pernoiteId,
                 valor,
-                numeroDiaria,
+                primeiroNumero,
+                dataInicio,
                 qtdPessoas,
-                quartoId
+                quartoId,
+                dataInicio,
+                dataFim
         );
     }
 
-    public void cancelarPernoite(Long codPernoite, String motivo) {
-        jdbcTemplate.update("""
+    /**
+     * Serializa, até o fim da transação corrente, as operações que reservam noites no quarto.
+     * Quartos diferentes usam chaves diferentes e seguem em paralelo.
+     */
+    public void bloquearQuarto(Long quartoId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> { },
+                LOCK_NAMESPACE_QUARTO, Math.toIntExact(quartoId));
+    }
+
+    /**
+     * Bloqueia vários quartos na mesma transação, sempre em ordem crescente de ID para evitar deadlock.
+     */
+    public void bloquearQuartos(Collection<Long> quartoIds) {
+        new TreeSet<>(quartoIds).forEach(this::bloquearQuarto);
+    }
+
+    /**
+     * Indica se o quarto tem alguma diária não cancelada em [inicio, fim),
+     * desconsiderando as diárias do pernoite {@code ignorarPernoiteId} (quando informado).
+     */
+    public boolean existeDiariaNoPeriodo(Long quartoId, LocalDate inicio, LocalDate fim, Long ignorarPernoiteId) {
+        Boolean existe = jdbcTemplate.queryForObject("""
+                    SELECT EXISTS (
+                        SELECT 1
+                        FROM diaria
+                        WHERE quarto_id = ?
+                          AND NOT cancelada
+                          AND data_inicio < ?
+                          AND data_fim > ?
+                          AND pernoite_id IS DISTINCT FROM ?
+                    ) OR EXISTS (
+                        SELECT 1
+                        FROM pernoite
+                        WHERE quarto_id = ?
+                          AND longa_permanencia
+                          AND ativo
+                          AND data_entrada < ?
+                          AND data_saida > ?
+                          AND id IS DISTINCT FROM ?
+                    )
+                """, Boolean.class,
+                quartoId, fim, inicio, ignorarPernoiteId,
+                quartoId, fim, inicio, ignorarPernoiteId);
+        return Boolean.TRUE.equals(existe);
+    }
+
+    /**
+     * @return o quarto do pernoite cancelado, ou {@code null} se o pernoite não existir
+     */
+    public Long cancelarPernoite(Long codPernoite, String motivo) {
+        Long quartoId = jdbcTemplate.query("""
                     UPDATE pernoite
                     SET ativo = FALSE,
                         status_pernoite_enum = 3
                     WHERE id = ?
-                """, codPernoite);
-    }
+                    RETURNING quarto_id
+                """, rs -> rs.next() ? rs.getObject("quarto_id", Long.class) : null, codPernoite);
 
-    public List<Map<String, Object>> listarPorStatus(StatusPernoiteEnum status) {
-        String sql;
-        Object[] params;
+        // libera as noites para novas reservas (índice único parcial em diaria)
+        jdbcTemplate.update("UPDATE diaria SET cancelada = TRUE WHERE pernoite_id = ?", codPernoite);
 
-        if (status == null) {
-            sql = """
-            SELECT 
+        return quartoId;
+    }
+
+    /**
+     * Lista os pernoites ativos (ou os que estão hospedados hoje, quando {@code status} é nulo)
+     * em páginas ordenadas por {@code data_entrada DESC, id DESC}. A página seguinte começa
+     * após o par ({@code cursorDataEntrada}, {@code cursorId}) do último item recebido.
+     */
+    public List<PernoiteResumoResponse> listarPorStatus(StatusPernoiteEnum status,
+                                                        LocalDate cursorDataEntrada,
+                                                        Long cursorId,
+                                                        Integer limite) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("""
+            SELECT
                 p.id,
                 p.quarto_id,
                 q.descricao AS quarto_descricao,
                 p.data_entrada,
-                p.data_saida,
-                p.hora_chegada,
-                p.hora_saida,
+                TO_CHAR(p.data_entrada, 'DD/MM/YYYY') AS data_entrada_fmt,
+                TO_CHAR(p.data_saida, 'DD/MM/YYYY') AS data_saida_fmt,
                 p.status_pernoite_enum,
                 p.valot_total,
                 p.ativo,
-                pes.nome AS representante_nome,
-                pes.cpf AS representante_cpf
+                rep.nome AS representante_nome,
+                rep.cpf AS representante_cpf
             FROM pernoite p
             JOIN quarto q ON q.id = p.quarto_id
-            LEFT JOIN diaria d 
-                ON d.pernoite_id = p.id 
-                AND CURRENT_DATE BETWEEN d.data_inicio AND d.data_fim
-            LEFT JOIN diaria_hospedes dh 
-                ON dh.diaria_id = d.id 
-                AND dh.representante = TRUE
-            LEFT JOIN pessoa pes 
-                ON pes.id = dh.hospedes_id
-            WHERE CURRENT_DATE BETWEEN p.data_entrada AND p.data_saida
-              AND p.ativo = TRUE
-            ORDER BY p.data_entrada DESC
-        """;
-            params = new Object[]{};
+            -- no máximo um representante por pernoite, para que o cursor não repita linhas
+            LEFT JOIN LATERAL (
+                SELECT pes.nome, pes.cpf
+                FROM diaria d
+                JOIN diaria_hospedes dh
+                    ON dh.diaria_id = d.id
+                    AND dh.representante = TRUE
+                JOIN pessoa pes
+                    ON pes.id = dh.hospedes_id
+                WHERE d.pernoite_id = p.id
+                  AND CURRENT_DATE BETWEEN d.data_inicio AND d.data_fim
+                ORDER BY d.data_inicio DESC
+                LIMIT 1
+            ) rep ON TRUE
+            WHERE p.ativo = TRUE
+            """);
+
+        if (status == null) {
+            sql.append(" AND CURRENT_DATE BETWEEN p.data_entrada AND p.data_saida");
         } else {
-            sql = """
-            SELECT 
-                p.id,
-                p.quarto_id,
-                q.descricao AS quarto_descricao,
-                p.data_entrada,
-                p.data_saida,
-                p.hora_chegada,
-                p.hora_saida,
-                p.status_pernoite_enum,
-                p.valot_total,
-                p.ativo,
-                pes.nome AS representante_nome,
-                pes.cpf AS representante_cpf
-            FROM pernoite p
-            JOIN quarto q ON q.id = p.quarto_id
-            LEFT JOIN diaria d 
-                ON d.pernoite_id = p.id 
-                AND CURRENT_DATE BETWEEN d.data_inicio AND d.data_fim
-            LEFT JOIN diaria_hospedes dh 
-                ON dh.diaria_id = d.id 
-                AND dh.representante = TRUE
-            LEFT JOIN pessoa pes 
-                ON pes.id = dh.hospedes_id
-            WHERE p.status_pernoite_enum = ?
-              AND p.ativo = TRUE
-            ORDER BY p.data_entrada DESC
-        """;
-            params = new Object[]{status.getValue()};
+            sql.append(" AND p.status_pernoite_enum = ?");
+            params.add(status.getValue());
         }
 
-        List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql, params);
-
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-
-        List<Map<String, Object>> respostaFormatada = new ArrayList<>();
-        for (Map<String, Object> row : resultados) {
-            Map<String, Object> formatado = new LinkedHashMap<>();
-
-            formatado.put("id", row.get("id"));
-            formatado.put("quartoId", row.get("quarto_id"));
-            formatado.put("quartoDescricao", row.get("quarto_descricao"));
-
-            Object dataEntradaObj = row.get("data_entrada");
-            Object dataSaidaObj = row.get("data_saida");
+        if (cursorDataEntrada != null && cursorId != null) {
+            sql.append(" AND (p.data_entrada, p.id) < (?, ?)");
+            params.add(cursorDataEntrada);
+            params.add(cursorId);
+        }
 
-            formatado.put("dataEntrada", dataEntradaObj instanceof java.sql.Date d ? d.toLocalDate().format(dateFormatter) : null);
-            formatado.put("dataSaida", dataSaidaObj instanceof java.sql.Date d ? d.toLocalDate().format(dateFormatter) : null);
+        sql.append(" ORDER BY p.data_entrada DESC, p.id DESC");
+        if (limite != null) {
+            sql.append(" LIMIT ?");
+            params.add(limite);
+        }
 
-            formatado.put("horaChegada", "00:00");
-            formatado.put("horaSaida", "00:00");
+        return jdbcTemplate.query(sql.toString(), PernoiteResumoResponse.ROW_MAPPER, params.toArray());
+    }
 
-            Integer statusInt = (Integer) row.get("status_pernoite_enum");
-            if (statusInt != null) {
-                Optional<StatusPernoiteEnum> statusEnum = Arrays.stream(StatusPernoiteEnum.values())
-                        .filter(e -> e.getValue() == statusInt)
-                        .findFirst();
-                formatado.put("status", statusEnum.map(Enum::name).orElse("DESCONHECIDO"));
-            } else {
-                formatado.put("status", "DESCONHECIDO");
+    /**
+     * Monta as diárias do pernoite a partir de uma única consulta: cada linha traz a diária e,
+     * no máximo, um filho (hóspede, consumo ou pagamento) identificado por {@code f_tipo}.
+     * As chaves dos mapas são as mesmas devolvidas pelas consultas individuais por diária.
+     */
+    private static final ResultSetExtractor<List<Map<String, Object>>> DETALHES_DIARIAS_EXTRACTOR = rs -> {
+        Map<Long, Map<String, Object>> diariasPorId = new LinkedHashMap<>();
+
+        while (rs.next()) {
+            Long diariaId = rs.getLong("id");
+
+            Map<String, Object> diaria = diariasPorId.get(diariaId);
+            if (diaria == null) {
+                diaria = new LinkedHashMap<>();
+                diaria.put("id", rs.getObject("id"));
+                diaria.put("numero_diaria", rs.getObject("numero_diaria"));
+                diaria.put("data_inicio", rs.getString("data_inicio"));
+                diaria.put("data_fim", rs.getString("data_fim"));
+                diaria.put("valor_diaria", rs.getObject("valor_diaria"));
+                diaria.put("total", rs.getObject("total"));
+                diaria.put("quantidade_pessoa", rs.getObject("quantidade_pessoa"));
+                diaria.put("hospedes", new ArrayList<Map<String, Object>>());
+                diaria.put("consumos", new ArrayList<Map<String, Object>>());
+                diaria.put("pagamentos", new ArrayList<Map<String, Object>>());
+                diariasPorId.put(diariaId, diaria);
             }
 
-            formatado.put("valorTotal", row.get("valot_total"));
-            formatado.put("ativo", row.get("ativo"));
-            formatado.put("representanteNome", row.get("representante_nome"));
-            formatado.put("representanteCpf", row.get("representante_cpf"));
-
-            respostaFormatada.add(formatado);
+            String tipo = rs.getString("f_tipo");
+            if (tipo == null) continue;
+
+            Map<String, Object> filho = new LinkedHashMap<>();
+            switch (tipo) {
+                case "H" -> {
+                    filho.put("id", rs.getObject("h_id"));
+                    filho.put("nome", rs.getString("h_nome"));
+                    filho.put("cpf", rs.getString("h_cpf"));
+                    filho.put("telefone", rs.getString("h_telefone"));
+                    filho.put("representante", rs.getObject("h_representante"));
+                    ((List<Map<String, Object>>) diaria.get("hospedes")).add(filho);
+                }
+                case "C" -> {
+                    filho.put("id", rs.getObject("c_id"));
+                    filho.put("item", rs.getString("c_item"));
+                    filho.put("quantidade", rs.getObject("c_quantidade"));
+                    filho.put("datahora", rs.getString("c_datahora"));
+                    filho.put("tipo_pagamento", rs.getString("c_tipo_pagamento"));
+                    filho.put("status_pagamento", rs.getString("c_status_pagamento"));
+                    filho.put("cor_status", rs.getString("c_cor_status"));
+                    ((List<Map<String, Object>>) diaria.get("consumos")).add(filho);
+                }
+                case "P" -> {
+                    filho.put("id", rs.getObject("p_id"));
+                    filho.put("valor", rs.getObject("p_valor"));
+                    filho.put("datahora", rs.getString("p_datahora"));
+                    filho.put("tipo_pagamento", rs.getString("p_tipo_pagamento"));
+                    ((List<Map<String, Object>>) diaria.get("pagamentos")).add(filho);
+                }
+                default -> { }
+            }
         }
 
-        return respostaFormatada;
-    }
+        return new ArrayList<>(diariasPorId.values());
+    };
 
     public Map<String, Object> buscarDetalhesPernoitePorId(Long pernoiteId) {
         Map<String, Object> response = new LinkedHashMap<>();
@@ -446,67 +826,73 @@ public class PernoiteRepository {
 
         response.put("dadosReserva", dadosReserva);
 
-        // 🔹 BUSCA TODAS AS DIÁRIAS
-        List<Map<String, Object>> diarias = jdbcTemplate.queryForList("""
-        SELECT id, numero_diaria, 
-               TO_CHAR(data_inicio, 'DD/MM/YYYY') AS data_inicio, 
-               TO_CHAR(data_fim, 'DD/MM/YYYY') AS data_fim,
-               valor_diaria, total, quantidade_pessoa
-        FROM diaria
-        WHERE pernoite_id = ?
-        ORDER BY data_inicio
-    """, pernoiteId);
-
-        // 🔹 PARA CADA DIÁRIA, ADICIONA HÓSPEDES, CONSUMOS E PAGAMENTOS
-        for (Map<String, Object> diaria : diarias) {
-            Long diariaId = ((Number) diaria.get("id")).longValue();
-
-            // HÓSPEDES
-            List<Map<String, Object>> hospedes = jdbcTemplate.queryForList("""
-            SELECT p.id, p.nome, p.cpf, p.telefone, dh.representante
+        // 🔹 DIÁRIAS + HÓSPEDES, CONSUMOS E PAGAMENTOS EM UMA ÚNICA CONSULTA
+        List<Map<String, Object>> diarias = jdbcTemplate.query("""
+        SELECT d.id, d.numero_diaria,
+               TO_CHAR(d.data_inicio, 'DD/MM/YYYY') AS data_inicio,
+               TO_CHAR(d.data_fim, 'DD/MM/YYYY') AS data_fim,
+               d.valor_diaria, d.total, d.quantidade_pessoa,
+               f.*
+        FROM diaria d
+        LEFT JOIN (
+            -- HÓSPEDES
+            SELECT 'H' AS f_tipo, dh.diaria_id AS f_diaria_id, NULL::timestamp AS f_ordem,
+                   p.id AS h_id, p.nome AS h_nome, p.cpf AS h_cpf, p.telefone AS h_telefone,
+                   dh.representante AS h_representante,
+                   -- o UNION resolve os tipos aos pares: os NULLs do primeiro ramo precisam de tipo explícito
+                   NULL::bigint AS c_id, NULL::text AS c_item, NULL::integer AS c_quantidade,
+                   NULL::text AS c_datahora, NULL::text AS c_tipo_pagamento,
+                   NULL::text AS c_status_pagamento, NULL::text AS c_cor_status,
+                   NULL::bigint AS p_id, NULL::double precision AS p_valor,
+                   NULL::text AS p_datahora, NULL::text AS p_tipo_pagamento
             FROM diaria_hospedes dh
             JOIN pessoa p ON p.id = dh.hospedes_id
-            WHERE dh.diaria_id = ?
-        """, diariaId);
-            diaria.put("hospedes", hospedes);
-
-            // CONSUMOS
-            List<Map<String, Object>> consumos = jdbcTemplate.queryForList("""
-            SELECT 
-                cd.id, 
-                i.descricao AS item, 
-                cd.quantidade,
-                TO_CHAR(cd.data_hora_consumo, 'DD/MM/YYYY HH24:MI') AS dataHora,
-                tp.descricao AS tipo_pagamento,
-                CASE 
-                    WHEN tp.descricao IS NULL THEN 'PENDENTE'
-                    ELSE 'PAGO'
-                END AS status_pagamento,
-                CASE 
-                    WHEN tp.descricao IS NULL THEN '#EF4444'  -- vermelho
-                    ELSE '#22C55E'  -- verde
-                END AS cor_status
+            JOIN diaria dd ON dd.id = dh.diaria_id
+            WHERE dd.pernoite_id = ?
+
+            UNION ALL
+
+            -- CONSUMOS
+            SELECT 'C', cd.diaria_id, cd.data_hora_consumo,
+                   NULL, NULL, NULL, NULL, NULL,
+                   cd.id,
+                   i.descricao,
+                   cd.quantidade,
+                   TO_CHAR(cd.data_hora_consumo, 'DD/MM/YYYY HH24:MI'),
+                   tp.descricao,
+                   CASE
+                       WHEN tp.descricao IS NULL THEN 'PENDENTE'
+                       ELSE 'PAGO'
+                   END,
+                   CASE
+                       WHEN tp.descricao IS NULL THEN '#EF4444'  -- vermelho
+                       ELSE '#22C55E'  -- verde
+                   END,
+                   NULL, NULL, NULL, NULL
             FROM consumo_diaria cd
+            JOIN diaria dd ON dd.id = cd.diaria_id
             LEFT JOIN itens i ON i.id = cd.item_id
             LEFT JOIN tipo_pagamento tp ON tp.id = cd.tipo_pagamento_id
-            WHERE cd.diaria_id = ?
-            ORDER BY cd.data_hora_consumo DESC
-        """, diariaId);
-            diaria.put("consumos", consumos);
-
-            // PAGAMENTOS
-            List<Map<String, Object>> pagamentos = jdbcTemplate.queryForList("""
-            SELECT 
-                dp.id, dp.valor,
-                TO_CHAR(dp.data_hora_pagamento, 'DD/MM/YYYY HH24:MI') AS dataHora,
-                tp.descricao AS tipo_pagamento
+            WHERE dd.pernoite_id = ?
+
+            UNION ALL
+
+            -- PAGAMENTOS
+            SELECT 'P', dp.diaria_id, dp.data_hora_pagamento,
+                   NULL, NULL, NULL, NULL, NULL,
+                   NULL, NULL, NULL, NULL, NULL, NULL, NULL,
+                   dp.id,
+                   dp.valor,
+                   TO_CHAR(dp.data_hora_pagamento, 'DD/MM/YYYY HH24:MI'),
+                   tp.descricao
             FROM diaria_pagamento dp
+            JOIN diaria dd ON dd.id = dp.diaria_id
             JOIN tipo_pagamento tp ON tp.id = dp.tipo_pagamento_id
-            WHERE dp.diaria_id = ?
-            ORDER BY dp.data_hora_pagamento DESC
-        """, diariaId);
-            diaria.put("pagamentos", pagamentos);
-        }
+            WHERE dd.pernoite_id = ?
+        ) f ON f.f_diaria_id = d.id
+        WHERE d.pernoite_id = ?
+        ORDER BY d.data_inicio, d.id, f.f_tipo, f.f_ordem DESC
+    """, DETALHES_DIARIAS_EXTRACTOR, pernoiteId, pernoiteId, pernoiteId, pernoiteId);
 
         response.put("diarias", diarias);
 
@@ -533,9 +919,64 @@ public class PernoiteRepository {
         return response;
     }
 
-
-
-
-
-
+    /**
+     * Histórico de pernoites com uma linha por diária, na ordem do pernoite, percorrido com cursor
+     * somente-leitura de {@link #FETCH_SIZE_EXPORTACAO} linhas. O período filtra pela data de entrada
+     * do pernoite. Deve rodar dentro de uma transação para que o fetch size seja respeitado.
+     */
+    public <T> T exportarHistorico(LocalDate dataInicio, LocalDate dataFim, ResultSetExtractor<T> extrator) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT p.id                 AS pernoite_id,
+                       q.descricao          AS quarto,
+                       p.data_entrada,
+                       p.data_saida,
+                       p.status_pernoite_enum AS status_pernoite,
+                       p.longa_permanencia,
+                       d.id                 AS diaria_id,
+                       d.numero_diaria,
+                       d.data_inicio,
+                       d.data_fim,
+                       d.quantidade_pessoa,
+                       d.valor_diaria,
+                       d.total,
+                       d.cancelada,
+                       rep.nome             AS representante,
+                       pago.valor           AS valor_pago
+                FROM pernoite p
+                JOIN quarto q ON q.id = p.quarto_id
+                LEFT JOIN diaria d ON d.pernoite_id = p.id
+                LEFT JOIN LATERAL (
+                    SELECT pe.nome
+                    FROM diaria_hospedes dh
+                    JOIN pessoa pe ON pe.id = dh.hospedes_id
+                    WHERE dh.diaria_id = d.id AND dh.representante
+                    LIMIT 1
+                ) rep ON TRUE
+                LEFT JOIN LATERAL (
+                    SELECT SUM(dp.valor) AS valor
+                    FROM diaria_pagamento dp
+                    WHERE dp.diaria_id = d.id
+                ) pago ON TRUE
+                WHERE 1=1
+                """);
+
+        List<Object> params = new ArrayList<>();
+        if (dataInicio != null) {
+            sql.append(" AND p.data_entrada >= ?");
+            params.add(dataInicio);
+        }
+        if (dataFim != null) {
+            sql.append(" AND p.data_entrada <= ?");
+            params.add(dataFim);
+        }
+        sql.append(" ORDER BY p.id, d.numero_diaria, d.id");
+
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE_EXPORTACAO);
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            return ps;
+        }, extrator);
+    }
 }
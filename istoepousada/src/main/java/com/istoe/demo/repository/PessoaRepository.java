@@ -1,9 +1,13 @@
 package com.istoe.demo.repository;
 
+import com.istoe.demo.event.CadastroAlteradoEvent;
 import com.istoe.demo.response.Empresa;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.Pessoa;
+import com.istoe.demo.response.PessoaResumoResponse;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -15,42 +19,72 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Repository
 public class PessoaRepository {
 
+    private static final int FETCH_SIZE_STREAM = 500;
+
+    /**
+     * Campos de {@link Pessoa} aceitos em {@code fields=}, pelo nome usado no JSON.
+     */
+    public static final CamposProjecao CAMPOS = new CamposProjecao("p", "empresasVinculadas")
+            .campo("id", "id", Long.class)
+            .campo("dataHoraCadastro", "data_hora_cadastro", LocalDateTime.class)
+            .campo("nome", "nome", String.class)
+            .campo("dataNascimento", "data_nascimento", LocalDate.class)
+            .campo("cpf", "cpf", String.class)
+            .campo("rg", "rg", String.class)
+            .campo("email", "email", String.class)
+            .campo("telefone", "telefone", String.class)
+            .campo("fkPais", "fk_pais", Long.class)
+            .campo("fkEstado", "fk_estado", Long.class)
+            .campo("fkMunicipio", "fk_municipio", Long.class)
+            .campo("endereco", "endereco", String.class)
+            .campo("complemento", "complemento", String.class)
+            .campo("hospedado", "hospedado", Boolean.class)
+            .campo("vezesHospedado", "vezes_hospedado", Integer.class)
+            .campo("clienteNovo", "cliente_novo", Boolean.class)
+            .campo("cep", "cep", String.class)
+            .campo("idade", "idade", Integer.class)
+            .campo("bairro", "bairro", String.class)
+            .campo("sexo", "sexo", Short.class)
+            .campo("numero", "numero", String.class);
+
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public PessoaRepository(JdbcTemplate jdbcTemplate) {
+    public PessoaRepository(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
-    private final ResultSetExtractor<List<Pessoa>> PESSOA_COM_EMPRESAS_EXTRACTOR = rs -> {
-        Map<Long, Pessoa> pessoaMap = new LinkedHashMap<>();
-        Map<Long, List<Empresa>> empresasPorPessoa = new HashMap<>();
+    /**
+     * Carrega as pessoas da consulta (uma linha por pessoa, colunas de {@code pessoa}) e depois
+     * todas as empresas vinculadas a elas em uma única consulta por {@code = ANY(?)}.
+     * São lidas pessoas + vínculos linhas, em vez de pessoas × empresas com as colunas da pessoa repetidas.
+     */
+    private List<Pessoa> carregarComEmpresas(String sqlPessoas, Object... args) {
+        List<Pessoa> pessoas = jdbcTemplate.query(sqlPessoas, (rs, i) -> mapPessoaCompleta(rs), args);
+        return comEmpresas(pessoas);
+    }
 
-        while (rs.next()) {
-            Long pessoaId = rs.getLong("id");
+    private List<Pessoa> comEmpresas(List<Pessoa> pessoas) {
+        if (pessoas.isEmpty()) return pessoas;
 
-            if (!pessoaMap.containsKey(pessoaId)) {
-                Pessoa pessoa = mapPessoaCompleta(rs);
-                pessoaMap.put(pessoaId, pessoa);
-                empresasPorPessoa.put(pessoaId, new ArrayList<>());
-            }
+        FilhosPorId<Empresa> empresas = empresasDe(pessoas.stream().mapToLong(Pessoa::id).toArray());
 
-            Long empresaId = rs.getObject("empresa_id", Long.class);
-            if (empresaId != null) {
-                Empresa empresa = mapEmpresaSimples(rs, "empresa_");
-                empresasPorPessoa.get(pessoaId).add(empresa);
-            }
+        List<Pessoa> resultado = new ArrayList<>(pessoas.size());
+        for (Pessoa pessoa : pessoas) {
+            resultado.add(pessoa.withEmpresas(empresas.de(pessoa.id())));
         }
-
-        return pessoaMap.entrySet().stream()
-                .map(entry -> entry.getValue().withEmpresas(empresasPorPessoa.get(entry.getKey())))
-                .toList();
-    };
+        return resultado;
+    }
 
     private Pessoa mapPessoaCompleta(ResultSet rs) throws SQLException {
         return new Pessoa(
@@ -105,10 +139,13 @@ public class PessoaRepository {
         );
     }
 
-    public Optional<Pessoa> findById(Long id) {
-        String sql = """
-            SELECT 
-                p.*,
+    private FilhosPorId<Empresa> empresasDe(long[] pessoaIds) {
+        FilhosPorId<Empresa> empresas = new FilhosPorId<>(pessoaIds);
+        if (pessoaIds.length == 0) return empresas;
+
+        jdbcTemplate.query("""
+            SELECT
+                ep.fk_pessoa as vinculo_pessoa_id,
                 e.id as empresa_id,
                 e.razao_social as empresa_razao_social,
                 e.nome_fantasia as empresa_nome_fantasia,
@@ -127,112 +164,312 @@ public class PessoaRepository {
                 e.bairro as empresa_bairro,
                 e.tipo_empresa as empresa_tipo_empresa,
                 e.ativa as empresa_ativa
-            FROM pessoa p
-            LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
-            LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            WHERE p.id = ?
+            FROM empresa_pessoa ep
+            JOIN empresa e ON ep.fk_empresa = e.id
+            WHERE ep.fk_pessoa = ANY (?)
             ORDER BY e.razao_social
-        """;
+        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", empresas.idsParaConsulta())),
+                rs -> {
+                    empresas.adicionar(rs.getLong("vinculo_pessoa_id"), mapEmpresaSimples(rs, "empresa_"));
+                });
+        return empresas;
+    }
+
+    public Optional<Pessoa> findById(Long id) {
+        String sql = "SELECT p.* FROM pessoa p WHERE p.id = ?";
 
-        List<Pessoa> pessoas = jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR, id);
+        List<Pessoa> pessoas = carregarComEmpresas(sql, id);
         return pessoas.isEmpty() ? Optional.empty() : Optional.of(pessoas.get(0));
     }
 
     public List<Pessoa> findByNome(String nome) {
         String sql = """
-            SELECT 
-                p.*,
-                e.id as empresa_id,
-                e.razao_social as empresa_razao_social,
-                e.nome_fantasia as empresa_nome_fantasia,
-                e.cnpj as empresa_cnpj,
-                e.inscricao_estadual as empresa_inscricao_estadual,
-                e.inscricao_municipal as empresa_inscricao_municipal,
-                e.telefone as empresa_telefone,
-                e.email as empresa_email,
-                e.endereco as empresa_endereco,
-                e.cep as empresa_cep,
-                e.numero as empresa_numero,
-                e.complemento as empresa_complemento,
-                e.fk_pais as empresa_fk_pais,
-                e.fk_estado as empresa_fk_estado,
-                e.fk_municipio as empresa_fk_municipio,
-                e.bairro as empresa_bairro,
-                e.tipo_empresa as empresa_tipo_empresa,
-                e.ativa as empresa_ativa
+            SELECT p.*
             FROM pessoa p
-            LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
-            LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            WHERE p.nome ILIKE ?
-            ORDER BY p.nome, e.razao_social
+            WHERE lower(f_unaccent(p.nome)) LIKE lower(f_unaccent(?))
+            ORDER BY p.nome
         """;
 
-        return jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR, "%" + nome + "%");
+        return carregarComEmpresas(sql, "%" + escaparLike(nome) + "%");
     }
 
     public Optional<Pessoa> findByCpf(String cpf) {
-        String sql = """
-            SELECT 
-                p.*,
-                e.id as empresa_id,
-                e.razao_social as empresa_razao_social,
-                e.nome_fantasia as empresa_nome_fantasia,
-                e.cnpj as empresa_cnpj,
-                e.inscricao_estadual as empresa_inscricao_estadual,
-                e.inscricao_municipal as empresa_inscricao_municipal,
-                e.telefone as empresa_telefone,
-                e.email as empresa_email,
-                e.endereco as empresa_endereco,
-                e.cep as empresa_cep,
-                e.numero as empresa_numero,
-                e.complemento as empresa_complemento,
-                e.fk_pais as empresa_fk_pais,
-                e.fk_estado as empresa_fk_estado,
-                e.fk_municipio as empresa_fk_municipio,
-                e.bairro as empresa_bairro,
-                e.tipo_empresa as empresa_tipo_empresa,
-                e.ativa as empresa_ativa
-            FROM pessoa p
-            LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
-            LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            WHERE p.cpf = ?
-            ORDER BY e.razao_social
-        """;
+        String sql = "SELECT p.* FROM pessoa p WHERE p.cpf = ?";
 
-        List<Pessoa> pessoas = jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR, cpf);
+        List<Pessoa> pessoas = carregarComEmpresas(sql, cpf);
         return pessoas.isEmpty() ? Optional.empty() : Optional.of(pessoas.get(0));
     }
 
     public List<Pessoa> findByNomeOrCpf(String termo) {
         String sql = """
-            SELECT 
-                p.*,
-                e.id as empresa_id,
-                e.razao_social as empresa_razao_social,
-                e.nome_fantasia as empresa_nome_fantasia,
-                e.cnpj as empresa_cnpj,
-                e.inscricao_estadual as empresa_inscricao_estadual,
-                e.inscricao_municipal as empresa_inscricao_municipal,
-                e.telefone as empresa_telefone,
-                e.email as empresa_email,
-                e.endereco as empresa_endereco,
-                e.cep as empresa_cep,
-                e.numero as empresa_numero,
-                e.complemento as empresa_complemento,
-                e.fk_pais as empresa_fk_pais,
-                e.fk_estado as empresa_fk_estado,
-                e.fk_municipio as empresa_fk_municipio,
-                e.bairro as empresa_bairro,
-                e.tipo_empresa as empresa_tipo_empresa,
-                e.ativa as empresa_ativa
+            SELECT p.*
             FROM pessoa p
-            LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
-            LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            WHERE p.nome ILIKE ? OR p.cpf = ?
-            ORDER BY p.nome, e.razao_social
+            WHERE lower(f_unaccent(p.nome)) LIKE lower(f_unaccent(?)) OR p.cpf = ?
+            ORDER BY p.nome
         """;
 
-        return jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR, "%" + termo + "%", termo);
+        return carregarComEmpresas(sql, "%" + escaparLike(termo) + "%", termo);
+    }
+
+    private record Ranqueada(Long id, float rank) { }
+
+    /**
+     * IDs de uma página da busca ranqueada, já na ordem de relevância.
+     */
+    public record Ranqueamento(List<Long> ids, String proximoCursor) { }
+
+    public PaginaResponse<Pessoa> buscarRanqueado(String termo, String cursor, int limite) {
+        Ranqueamento ranqueamento = ranquear(termo, cursor, limite);
+        return new PaginaResponse<>(findByIds(ranqueamento.ids()), ranqueamento.proximoCursor());
+    }
+
+    /**
+     * Busca de hóspedes por nome ou CPF, ranqueada e paginada por cursor.
+     * <p>
+     * Um termo com 11 dígitos é tratado como CPF exato; outros termos só com dígitos buscam pelo prefixo do CPF.
+     * Nomes são comparados sem acento e sem caixa, pelo índice trigram de {@code pessoa.nome}:
+     * quem começa com o termo vem primeiro, depois quem o contém, depois os parecidos (erros de digitação),
+     * cada faixa ordenada pela similaridade. O cursor é "rank,id" do último item da página.
+     */
+    public Ranqueamento ranquear(String termo, String cursor, int limite) {
+        String digitos = termo.replaceAll("[^0-9]", "");
+        boolean soDigitos = !digitos.isEmpty() && termo.replaceAll("[0-9.\\-/\\s]", "").isEmpty();
+
+        if (soDigitos && digitos.length() == 11) {
+            List<Long> ids = jdbcTemplate.queryForList("""
+                SELECT id FROM pessoa
+                WHERE regexp_replace(cpf, '[^0-9]', '', 'g') = ?
+                ORDER BY id
+                LIMIT ?
+            """, Long.class, digitos, limite);
+            return new Ranqueamento(ids, null);
+        }
+
+        Float cursorRank = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] partes = cursor.split(",");
+            if (partes.length != 2) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            try {
+                cursorRank = Float.parseFloat(partes[0]);
+                cursorId = Long.parseLong(partes[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        List<Ranqueada> ranqueadas;
+        if (soDigitos) {
+            ranqueadas = jdbcTemplate.query("""
+                SELECT id, 0::real AS rank
+                FROM pessoa
+                WHERE regexp_replace(cpf, '[^0-9]', '', 'g') LIKE ?
+                  AND (?::bigint IS NULL OR id > ?)
+                ORDER BY id
+                LIMIT ?
+            """, (rs, i) -> new Ranqueada(rs.getLong("id"), rs.getFloat("rank")),
+                    digitos + "%", cursorId, cursorId, limite);
+        } else {
+            String normalizado = termo.trim();
+            String contem = "%" + escaparLike(normalizado) + "%";
+            String comeca = escaparLike(normalizado) + "%";
+            ranqueadas = jdbcTemplate.query("""
+                SELECT id, rank
+                FROM (
+                    SELECT p.id,
+                           (CASE
+                                WHEN lower(f_unaccent(p.nome)) LIKE lower(f_unaccent(?)) THEN 2
+                                WHEN lower(f_unaccent(p.nome)) LIKE lower(f_unaccent(?)) THEN 1
+                                ELSE 0
+                            END + word_similarity(lower(f_unaccent(?)), lower(f_unaccent(p.nome))))::real AS rank
+                    FROM pessoa p
+                    WHERE lower(f_unaccent(p.nome)) LIKE lower(f_unaccent(?))
+                       OR lower(f_unaccent(?)) <% lower(f_unaccent(p.nome))
+                ) r
+                WHERE ?::real IS NULL
+                   OR r.rank < ?::real
+                   OR (r.rank = ?::real AND r.id > ?)
+                ORDER BY r.rank DESC, r.id
+                LIMIT ?
+            """, (rs, i) -> new Ranqueada(rs.getLong("id"), rs.getFloat("rank")),
+                    comeca, contem, normalizado, contem, normalizado,
+                    cursorRank, cursorRank, cursorRank, cursorId, limite);
+        }
+
+        String proximoCursor = null;
+        if (ranqueadas.size() == limite) {
+            Ranqueada ultima = ranqueadas.get(ranqueadas.size() - 1);
+            proximoCursor = ultima.rank() + "," + ultima.id();
+        }
+        return new Ranqueamento(ranqueadas.stream().map(Ranqueada::id).toList(), proximoCursor);
+    }
+
+    /**
+     * Carrega as pessoas com suas empresas, na ordem dos IDs informados.
+     */
+    private List<Pessoa> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        List<Pessoa> pessoas = jdbcTemplate.query("SELECT p.* FROM pessoa p WHERE p.id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                (rs, i) -> mapPessoaCompleta(rs));
+        return comEmpresas(ordenarPorIds(ids, pessoas, Pessoa::id));
+    }
+
+    /**
+     * Resumos (id, nome, CPF, telefone) das pessoas informadas, na ordem dos IDs.
+     */
+    public List<PessoaResumoResponse> findResumosPorIds(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        List<PessoaResumoResponse> resumos = jdbcTemplate.query(
+                "SELECT p.id, p.nome, p.cpf, p.telefone FROM pessoa p WHERE p.id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                PessoaResumoResponse.ROW_MAPPER);
+        return ordenarPorIds(ids, resumos, PessoaResumoResponse::id);
+    }
+
+    /**
+     * Página de resumos em ordem de nome, depois do {@code cursor} "nome,id" (exclusive).
+     */
+    public PaginaResponse<PessoaResumoResponse> findResumosPagina(String cursor, int limite) {
+        String sql = """
+            SELECT p.id, p.nome, p.cpf, p.telefone
+            FROM pessoa p
+            WHERE %s
+            ORDER BY p.nome, p.id
+            LIMIT ?
+        """.formatted(APOS_CURSOR_NOME);
+        List<Object> params = new ArrayList<>(parametrosCursorNome(cursor));
+        params.add(limite);
+
+        List<PessoaResumoResponse> resumos = jdbcTemplate.query(sql, PessoaResumoResponse.ROW_MAPPER, params.toArray());
+        String proximoCursor = resumos.size() == limite
+                ? cursorNome(resumos.get(resumos.size() - 1).nome(), resumos.get(resumos.size() - 1).id())
+                : null;
+        return new PaginaResponse<>(resumos, proximoCursor);
+    }
+
+    /**
+     * Pessoas em ordem de nome com apenas os campos pedidos; sem {@code limite}, traz todas.
+     * As empresas só são consultadas quando {@code empresasVinculadas} está entre os campos.
+     */
+    public PaginaResponse<Map<String, Object>> findCampos(List<String> campos,
+                                                          boolean somenteHospedados,
+                                                          String cursor,
+                                                          Integer limite) {
+        String sql = """
+            SELECT %s, p.nome AS cursor_nome
+            FROM pessoa p
+            WHERE (NOT ? OR p.hospedado = true)
+              AND %s
+            ORDER BY p.nome, p.id
+            LIMIT ?
+        """.formatted(CAMPOS.colunas(campos), APOS_CURSOR_NOME);
+        List<Object> params = new ArrayList<>();
+        params.add(somenteHospedados);
+        params.addAll(parametrosCursorNome(cursor));
+        params.add(limite);
+
+        List<Long> ids = new ArrayList<>();
+        List<String> nomes = new ArrayList<>();
+        List<Map<String, Object>> linhas = jdbcTemplate.query(sql, (rs, i) -> {
+            ids.add(rs.getLong("id"));
+            nomes.add(rs.getString("cursor_nome"));
+            return CAMPOS.mapear(rs, campos);
+        }, params.toArray());
+
+        comEmpresasProjetadas(campos, ids, linhas);
+
+        String proximoCursor = limite != null && linhas.size() == limite
+                ? cursorNome(nomes.get(nomes.size() - 1), ids.get(ids.size() - 1))
+                : null;
+        return new PaginaResponse<>(linhas, proximoCursor);
+    }
+
+    /**
+     * Pessoas informadas com apenas os campos pedidos, na ordem dos IDs.
+     */
+    public List<Map<String, Object>> findCamposPorIds(List<Long> ids, List<String> campos) {
+        if (ids.isEmpty()) return List.of();
+
+        String sql = "SELECT %s FROM pessoa p WHERE p.id = ANY (?)".formatted(CAMPOS.colunas(campos));
+        Map<Long, Map<String, Object>> porId = new HashMap<>();
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                rs -> {
+                    porId.put(rs.getLong("id"), CAMPOS.mapear(rs, campos));
+                });
+
+        List<Long> encontrados = new ArrayList<>(ids.size());
+        List<Map<String, Object>> linhas = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Map<String, Object> linha = porId.get(id);
+            if (linha == null) continue;
+            encontrados.add(id);
+            linhas.add(linha);
+        }
+        comEmpresasProjetadas(campos, encontrados, linhas);
+        return linhas;
+    }
+
+    private void comEmpresasProjetadas(List<String> campos, List<Long> ids, List<Map<String, Object>> linhas) {
+        if (!CAMPOS.incluiFilhos(campos) || ids.isEmpty()) return;
+
+        FilhosPorId<Empresa> empresas = empresasDe(ids.stream().mapToLong(Long::longValue).toArray());
+        for (int i = 0; i < linhas.size(); i++) {
+            linhas.get(i).put("empresasVinculadas", empresas.de(ids.get(i)));
+        }
+    }
+
+    private static <T> List<T> ordenarPorIds(List<Long> ids, List<T> itens, Function<T, Long> id) {
+        Map<Long, T> porId = new HashMap<>();
+        for (T item : itens) porId.put(id.apply(item), item);
+
+        List<T> ordenados = new ArrayList<>(ids.size());
+        for (Long chave : ids) {
+            T item = porId.get(chave);
+            if (item != null) ordenados.add(item);
+        }
+        return ordenados;
+    }
+
+    /**
+     * Condição "depois do cursor" na ordem {@code (p.nome, p.id)}, com nomes nulos por último como
+     * no ORDER BY. Compara com os valores do próprio cursor, então a página seguinte não depende de
+     * a pessoa do cursor ainda existir. Parâmetros em {@link #parametrosCursorNome(String)}.
+     */
+    private static final String APOS_CURSOR_NOME = """
+            (?::bigint IS NULL
+                   OR (?::text IS NOT NULL AND ((p.nome, p.id) > (?, ?) OR p.nome IS NULL))
+                   OR (?::text IS NULL AND p.nome IS NULL AND p.id > ?))""";
+
+    /**
+     * Cursor da ordem por nome: "nome,id" do último item; quando o nome é nulo, só o id.
+     */
+    private static String cursorNome(String nome, Long id) {
+        return nome != null ? nome + "," + id : String.valueOf(id);
+    }
+
+    private static List<Object> parametrosCursorNome(String cursor) {
+        Long id = null;
+        String nome = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int separador = cursor.lastIndexOf(',');
+            try {
+                id = Long.parseLong(cursor.substring(separador + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            nome = separador >= 0 ? cursor.substring(0, separador) : null;
+        }
+        return Arrays.asList(id, nome, nome, id, nome, id);
+    }
+
+    /** Escapa {@code \}, {@code %} e {@code _} para que o termo seja buscado literalmente em um LIKE. */
+    static String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     @Transactional
@@ -293,6 +530,7 @@ public class PessoaRepository {
                 ? ((Number) keys.get("id")).longValue()
                 : null;
 
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.PESSOA, generatedId));
         return pessoa.withId(generatedId);
     }
 
@@ -329,6 +567,7 @@ public class PessoaRepository {
                 pessoa.numero(),
                 pessoa.id()
         );
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.PESSOA, pessoa.id()));
     }
 
     @Transactional
@@ -349,37 +588,50 @@ public class PessoaRepository {
     }
 
     public List<Pessoa> findAll() {
-        String sql = """
-            SELECT 
-                p.*,
-                e.id as empresa_id,
-                e.razao_social as empresa_razao_social,
-                e.nome_fantasia as empresa_nome_fantasia,
-                e.cnpj as empresa_cnpj,
-                e.inscricao_estadual as empresa_inscricao_estadual,
-                e.inscricao_municipal as empresa_inscricao_municipal,
-                e.telefone as empresa_telefone,
-                e.email as empresa_email,
-                e.endereco as empresa_endereco,
-                e.cep as empresa_cep,
-                e.numero as empresa_numero,
-                e.complemento as empresa_complemento,
-                e.fk_pais as empresa_fk_pais,
-                e.fk_estado as empresa_fk_estado,
-                e.fk_municipio as empresa_fk_municipio,
-                e.bairro as empresa_bairro,
-                e.tipo_empresa as empresa_tipo_empresa,
-                e.ativa as empresa_ativa
-            FROM pessoa p
-            LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
-            LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            ORDER BY p.nome, e.razao_social
-        """;
+        String sql = "SELECT p.* FROM pessoa p ORDER BY p.nome";
 
-        return jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR);
+        return carregarComEmpresas(sql);
     }
 
     public List<Pessoa> findHospedados() {
+        String sql = "SELECT p.* FROM pessoa p WHERE p.hospedado = true ORDER BY p.nome";
+
+        return carregarComEmpresas(sql);
+    }
+
+    /**
+     * Página de pessoas em ordem de nome, depois do {@code cursor} "nome,id" (exclusive).
+     * A paginação é por chave ({@code (nome, id)}), então o custo não cresce com o número da página.
+     */
+    public PaginaResponse<Pessoa> findPagina(boolean somenteHospedados, String cursor, int limite) {
+        String sql = """
+            SELECT p.*
+            FROM pessoa p
+            WHERE (NOT ? OR p.hospedado = true)
+              AND %s
+            ORDER BY p.nome, p.id
+            LIMIT ?
+        """.formatted(APOS_CURSOR_NOME);
+        List<Object> params = new ArrayList<>();
+        params.add(somenteHospedados);
+        params.addAll(parametrosCursorNome(cursor));
+        params.add(limite);
+
+        List<Pessoa> pessoas = carregarComEmpresas(sql, params.toArray());
+
+        String proximoCursor = pessoas.size() == limite
+                ? cursorNome(pessoas.get(pessoas.size() - 1).nome(), pessoas.get(pessoas.size() - 1).id())
+                : null;
+        return new PaginaResponse<>(pessoas, proximoCursor);
+    }
+
+    /**
+     * Percorre todas as pessoas (ou só as hospedadas) entregando cada uma, já com suas empresas,
+     * assim que a última linha dela é lida. O cursor do banco traz {@link #FETCH_SIZE_STREAM} linhas por vez,
+     * então a memória usada não depende do tamanho do cadastro. Precisa rodar dentro de uma transação,
+     * senão o driver do PostgreSQL ignora o fetch size e carrega tudo.
+     */
+    public void streamAll(boolean somenteHospedados, Consumer<Pessoa> consumidor) {
         String sql = """
             SELECT 
                 p.*,
@@ -404,11 +656,64 @@ public class PessoaRepository {
             FROM pessoa p
             LEFT JOIN empresa_pessoa ep ON p.id = ep.fk_pessoa
             LEFT JOIN empresa e ON ep.fk_empresa = e.id
-            WHERE p.hospedado = true
-            ORDER BY p.nome, e.razao_social
+            WHERE (NOT ? OR p.hospedado = true)
+            ORDER BY p.nome, p.id, e.razao_social
         """;
 
-        return jdbcTemplate.query(sql, PESSOA_COM_EMPRESAS_EXTRACTOR);
+        AgrupadorPessoas agrupador = new AgrupadorPessoas(consumidor);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(FETCH_SIZE_STREAM);
+            ps.setBoolean(1, somenteHospedados);
+            return ps;
+        }, agrupador);
+        agrupador.finalizar();
+    }
+
+    /**
+     * Junta as linhas consecutivas de uma mesma pessoa (a consulta vem ordenada por pessoa)
+     * e entrega a pessoa completa quando a próxima começa.
+     */
+    private class AgrupadorPessoas implements RowCallbackHandler {
+        private final Consumer<Pessoa> consumidor;
+        private Pessoa atual;
+        private List<Empresa> empresas = new ArrayList<>();
+
+        AgrupadorPessoas(Consumer<Pessoa> consumidor) {
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long pessoaId = rs.getLong("id");
+            if (atual == null || atual.id() != pessoaId) {
+                finalizar();
+                atual = mapPessoaCompleta(rs);
+            }
+            if (rs.getObject("empresa_id", Long.class) != null) {
+                empresas.add(mapEmpresaSimples(rs, "empresa_"));
+            }
+        }
+
+        void finalizar() {
+            if (atual == null) return;
+            consumidor.accept(atual.withEmpresas(empresas));
+            atual = null;
+            empresas = new ArrayList<>();
+        }
+    }
+
+    /**
+     * IDs da lista que existem na tabela pessoa, verificados em uma única consulta.
+     */
+    public Set<Long> findIdsExistentes(Collection<Long> ids) {
+        if (ids.isEmpty()) return Set.of();
+
+        Set<Long> existentes = new HashSet<>();
+        jdbcTemplate.query("SELECT id FROM pessoa WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                rs -> { existentes.add(rs.getLong("id")); });
+        return existentes;
     }
 
     public boolean possuiVinculoComEmpresa(Long pessoaId) {
@@ -443,5 +748,6 @@ public class PessoaRepository {
         removerTodosVinculosComEmpresas(id);
         String sql = "DELETE FROM pessoa WHERE id = ?";
         jdbcTemplate.update(sql, id);
+        eventPublisher.publishEvent(new CadastroAlteradoEvent(CadastroAlteradoEvent.Entidade.PESSOA, id));
     }
 }
\ No newline at end of file
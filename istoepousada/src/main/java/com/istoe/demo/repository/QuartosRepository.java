@@ -3,6 +3,7 @@ package com.istoe.demo.repository;
 import com.istoe.demo.enums.RoomStatusEnum;
 import com.istoe.demo.request.CreateQuartoRequest;
 import com.istoe.demo.request.UpdateQuartoRequest;
+import com.istoe.demo.response.CalendarioQuartosResponse;
 import com.istoe.demo.response.CategoriaResponse;
 import com.istoe.demo.response.ObjetoResponse;
 import com.istoe.demo.response.RoomsResponse;
@@ -17,7 +18,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -33,7 +40,7 @@ public class QuartosRepository {
     }
 
     public RoomsResponse findRoomsByFilters(LocalDate date, RoomStatusEnum status, String searchTerm) {
-        QueryBuilderResult queryResult = buildQueryAndParams(date, status, searchTerm);
+        QueryBuilderResult queryResult = buildQueryAndParams(date, status, searchTerm, null);
 
         List<RoomWithCategoryInfo> roomsWithCategory = jdbcTemplate.query(
                 queryResult.sql,
@@ -41,9 +48,22 @@ public class QuartosRepository {
                 new RoomRowMapper()
         );
 
+        return agruparPorCategoria(roomsWithCategory);
+    }
+
+    /**
+     * Linhas do quadro de quartos na data, sem filtros, ou apenas a linha do quarto informado.
+     */
+    public List<RoomWithCategoryInfo> listarQuadro(LocalDate date, Long quartoId) {
+        QueryBuilderResult queryResult = buildQueryAndParams(date, null, null, quartoId);
+        return jdbcTemplate.query(queryResult.sql, queryResult.params.toArray(), new RoomRowMapper());
+    }
+
+    public static RoomsResponse agruparPorCategoria(List<RoomWithCategoryInfo> roomsWithCategory) {
         Map<String, List<RoomsResponse.Categoria.Room>> roomsByCategory = roomsWithCategory.stream()
                 .collect(Collectors.groupingBy(
                         rwc -> rwc.categoria != null ? rwc.categoria : "Sem Categoria",
+                        LinkedHashMap::new,
                         Collectors.mapping(rwc -> rwc.room, Collectors.toList())
                 ));
 
@@ -54,7 +74,7 @@ public class QuartosRepository {
         return new RoomsResponse(categories);
     }
 
-    private QueryBuilderResult buildQueryAndParams(LocalDate date, RoomStatusEnum status, String searchTerm) {
+    private QueryBuilderResult buildQueryAndParams(LocalDate date, RoomStatusEnum status, String searchTerm, Long quartoId) {
         List<Object> params = new ArrayList<>();
         StringBuilder sqlBuilder = new StringBuilder();
 
@@ -83,12 +103,20 @@ public class QuartosRepository {
                     pe.cpf,
                     pe.telefone,
 
+                    -- Período do pernoite da diaria
+                    p.data_entrada,
+                    p.data_saida,
+                    p.hora_chegada,
+                    p.hora_saida,
+
                     ROW_NUMBER() OVER (PARTITION BY q.id ORDER BY d.data_inicio DESC NULLS LAST) as rn
 
                 FROM quarto q
                 LEFT JOIN categoria c ON q.fk_categoria = c.id
                 LEFT JOIN diaria d ON q.id = d.quarto_id 
                     AND (d.data_inicio <= ? AND d.data_fim >= ?) -- filtro por periodo
+                    AND NOT d.cancelada
+                LEFT JOIN pernoite p ON p.id = d.pernoite_id
 
                 -- JOIN com pessoa do representante na diaria (diaria_hospedes)
                 LEFT JOIN diaria_hospedes dh ON d.id = dh.diaria_id AND dh.representante = true
@@ -99,14 +127,19 @@ public class QuartosRepository {
         params.add(date);
         params.add(date);
 
+        if (quartoId != null) {
+            sqlBuilder.append(" AND q.id = ?");
+            params.add(quartoId);
+        }
+
         if (status != null) {
             sqlBuilder.append(" AND q.status_quarto_enum = ?");
             params.add(status.ordinal());
         }
 
         if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            sqlBuilder.append(" AND (UPPER(pe.nome) LIKE UPPER(?) OR pe.cpf LIKE ?)");
-            String likePattern = "%" + searchTerm + "%";
+            sqlBuilder.append(" AND (lower(f_unaccent(pe.nome)) LIKE lower(f_unaccent(?)) OR pe.cpf LIKE ?)");
+            String likePattern = "%" + PessoaRepository.escaparLike(searchTerm) + "%";
             params.add(likePattern);
             params.add(likePattern);
         }
@@ -122,7 +155,11 @@ public class QuartosRepository {
 
     private record QueryBuilderResult(String sql, List<Object> params) { }
 
-    private record RoomWithCategoryInfo(String categoria, RoomsResponse.Categoria.Room room) { }
+    public record RoomWithCategoryInfo(String categoria, RoomsResponse.Categoria.Room room) { }
+
+    private static RoomStatusEnum statusQuarto(Integer statusEnum) {
+        return statusEnum != null ? RoomStatusEnum.values()[statusEnum] : RoomStatusEnum.DISPONIVEL;
+    }
 
     private class RoomRowMapper implements RowMapper<RoomWithCategoryInfo> {
         @Override
@@ -130,11 +167,7 @@ public class QuartosRepository {
             String categoria = rs.getString("categoria");
             RoomStatusEnum roomStatus = determineRoomStatus(rs);
 
-            RoomsResponse.Categoria.Room.Holder holder = null;
-            Long diariaId = (Long) rs.getObject("diaria_id");
-            if (diariaId != null) {
-                holder = findDiariaHolder(diariaId);
-            }
+            RoomsResponse.Categoria.Room.Holder holder = mapHolder(rs);
 
             RoomsResponse.Categoria.Room room = new RoomsResponse.Categoria.Room(
                     rs.getLong("quarto_id"),
@@ -152,51 +185,95 @@ public class QuartosRepository {
         }
 
         private RoomStatusEnum determineRoomStatus(ResultSet rs) throws SQLException {
-            Integer statusEnum = (Integer) rs.getObject("status_quarto_enum");
-            return statusEnum != null ? RoomStatusEnum.values()[statusEnum] : RoomStatusEnum.DISPONIVEL;
+            return statusQuarto((Integer) rs.getObject("status_quarto_enum"));
+        }
+
+        private RoomsResponse.Categoria.Room.Holder mapHolder(ResultSet rs) throws SQLException {
+            Long pessoaId = (Long) rs.getObject("pessoa_id");
+            if (pessoaId == null || rs.getObject("diaria_id") == null) return null;
+
+            return new RoomsResponse.Categoria.Room.Holder(
+                    pessoaId,
+                    rs.getString("nome"),
+                    rs.getString("cpf"),
+                    rs.getString("telefone"),
+                    rs.getInt("quantidade_pessoa"),
+                    rs.getObject("data_entrada", LocalDate.class),
+                    rs.getObject("data_saida", LocalDate.class),
+                    rs.getObject("hora_chegada", LocalTime.class),
+                    rs.getObject("hora_saida", LocalTime.class)
+            );
         }
     }
 
-    private RoomsResponse.Categoria.Room.Holder findDiariaHolder(Long diariaId) {
-        if (diariaId == null) return null;
+    /**
+     * Ocupação de cada quarto noite a noite entre {@code inicio} e {@code fim} (inclusive), em uma única consulta.
+     * Noites sem diária ficam como DISPONIVEL, exceto a de hoje, que mostra o status atual do quarto.
+     */
+    public CalendarioQuartosResponse listarCalendario(LocalDate inicio, LocalDate fim) {
         String sql = """
-            SELECT
-                pe.id,
-                pe.nome,
-                pe.cpf,
-                pe.telefone,
-                d.quantidade_pessoa,
-                p.data_entrada,
-                p.data_saida,
-                p.hora_chegada,
-                p.hora_saida
-            FROM diaria_hospedes dh
-            JOIN pessoa pe ON dh.hospedes_id = pe.id
-            JOIN public.diaria d on d.id = dh.diaria_id
-            JOIN public.pernoite p on p.id = d.pernoite_id
-    
-            WHERE dh.diaria_id = ?
-            AND dh.representante = true
-            LIMIT 1
+            WITH dias AS (
+                SELECT g.dia::date AS dia
+                FROM generate_series(?::date, ?::date, INTERVAL '1 day') AS g(dia)
+            ),
+            noites AS (
+                SELECT d.quarto_id, d.data_inicio AS dia, dh.hospedes_id AS titular_id
+                FROM diaria d
+                LEFT JOIN diaria_hospedes dh ON dh.diaria_id = d.id AND dh.representante = true
+                WHERE NOT d.cancelada
+                  AND d.data_inicio BETWEEN ? AND ?
+                UNION ALL
+                -- longas permanências ocupam as noites ainda não materializadas em diárias
+                SELECT p.quarto_id, dias.dia, ph.hospedes_id
+                FROM pernoite p
+                JOIN dias ON dias.dia >= p.data_entrada AND dias.dia < p.data_saida
+                LEFT JOIN pernoite_hospedes ph ON ph.pernoite_id = p.id AND ph.representante
+                WHERE p.longa_permanencia
+                  AND p.ativo
+            ),
+            ocupacao AS (
+                SELECT quarto_id, dia, MIN(titular_id) AS titular_id
+                FROM noites
+                GROUP BY quarto_id, dia
+            )
+            SELECT q.id,
+                   q.descricao,
+                   c.categoria,
+                   q.status_quarto_enum,
+                   array_agg(o.quarto_id IS NOT NULL ORDER BY dias.dia) AS ocupados,
+                   array_agg(o.titular_id ORDER BY dias.dia) AS titulares
+            FROM quarto q
+            LEFT JOIN categoria c ON q.fk_categoria = c.id
+            CROSS JOIN dias
+            LEFT JOIN ocupacao o ON o.quarto_id = q.id AND o.dia = dias.dia
+            GROUP BY q.id, q.descricao, c.categoria, q.status_quarto_enum
+            ORDER BY c.categoria, q.id
         """;
-        try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{diariaId}, (rs, rowNum) ->
-                    new RoomsResponse.Categoria.Room.Holder(
-                            (Long) rs.getObject("id"),
-                            rs.getString("nome"),
-                            rs.getString("cpf"),
-                            rs.getString("telefone"),
-                            rs.getInt("quantidade_pessoa"),
-                            rs.getDate("data_entrada").toLocalDate(),
-                            rs.getDate("data_saida").toLocalDate(),
-                            rs.getTime("hora_chegada").toLocalTime(),
-                            rs.getTime("hora_saida").toLocalTime()
-                    )
+
+        int hoje = (int) ChronoUnit.DAYS.between(inicio, LocalDate.now());
+
+        List<CalendarioQuartosResponse.Quarto> quartos = jdbcTemplate.query(sql, (rs, i) -> {
+            Boolean[] ocupados = (Boolean[]) rs.getArray("ocupados").getArray();
+            Long[] titulares = (Long[]) rs.getArray("titulares").getArray();
+            Integer statusAtual = (Integer) rs.getObject("status_quarto_enum");
+
+            List<RoomStatusEnum> status = new ArrayList<>(ocupados.length);
+            for (int dia = 0; dia < ocupados.length; dia++) {
+                if (Boolean.TRUE.equals(ocupados[dia])) status.add(RoomStatusEnum.OCUPADO);
+                else if (dia == hoje) status.add(statusQuarto(statusAtual));
+                else status.add(RoomStatusEnum.DISPONIVEL);
+            }
+
+            return new CalendarioQuartosResponse.Quarto(
+                    rs.getLong("id"),
+                    rs.getString("descricao"),
+                    rs.getString("categoria"),
+                    status,
+                    Arrays.asList(titulares)
             );
-        } catch (Exception e) {
-            System.err.println("Erro ao buscar representante da diaria " + diariaId + ": " + e.getMessage());
-            return null;
-        }
+        }, inicio, fim, inicio, fim);
+
+        return new CalendarioQuartosResponse(inicio, fim, quartos);
     }
 
     public List<ObjetoResponse> listarQuartosEnum() {
@@ -211,6 +288,140 @@ public class QuartosRepository {
         );
     }
 
+    /**
+     * Categoria de cada quarto (0 quando o quarto não tem categoria).
+     */
+    public Map<Long, Long> listarCategoriaPorQuarto() {
+        final String sql = "SELECT id, COALESCE(fk_categoria, 0) AS fk_categoria FROM quarto";
+        Map<Long, Long> categoriaPorQuarto = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            categoriaPorQuarto.put(rs.getLong("id"), rs.getLong("fk_categoria"));
+        });
+        return categoriaPorQuarto;
+    }
+
+    /**
+     * Preço da diária por categoria, indexado pela quantidade de pessoas.
+     * Posições sem preço cadastrado ficam com {@link Double#NaN}.
+     */
+    public Map<Long, double[]> listarPrecosPorCategoria() {
+        final String sql = "SELECT fk_categoria, qtd_pessoa, valor FROM preco_pessoa_categoria";
+        Map<Long, double[]> precosPorCategoria = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            long categoriaId = rs.getLong("fk_categoria");
+            int qtdPessoa = rs.getInt("qtd_pessoa");
+            if (qtdPessoa < 0) return;
+
+            double[] precos = precosPorCategoria.get(categoriaId);
+            if (precos == null || precos.length <= qtdPessoa) {
+                double[] ampliado = new double[qtdPessoa + 1];
+                Arrays.fill(ampliado, Double.NaN);
+                if (precos != null) System.arraycopy(precos, 0, ampliado, 0, precos.length);
+                precos = ampliado;
+                precosPorCategoria.put(categoriaId, precos);
+            }
+            precos[qtdPessoa] = rs.getDouble("valor");
+        });
+        return precosPorCategoria;
+    }
+
+    public record QuartoCapacidade(Long id, String descricao, String categoria, Integer capacidade) { }
+
+    public record PeriodoOcupado(Long quartoId, LocalDate inicio, LocalDate fim) { }
+
+    public List<QuartoCapacidade> listarQuartosComCapacidade(Long quartoId) {
+        String sql = """
+            SELECT q.id, q.descricao, q.quantidade_pessoas, c.categoria
+            FROM quarto q
+            LEFT JOIN categoria c ON q.fk_categoria = c.id
+            WHERE (?::bigint IS NULL OR q.id = ?)
+            ORDER BY q.id
+        """;
+        return jdbcTemplate.query(sql, (rs, i) -> new QuartoCapacidade(
+                rs.getLong("id"),
+                rs.getString("descricao"),
+                rs.getString("categoria"),
+                rs.getObject("quantidade_pessoas", Integer.class)
+        ), quartoId, quartoId);
+    }
+
+    /**
+     * Noites ocupadas em [inicio, fim): diárias não canceladas e, para longas permanências,
+     * o período inteiro (as diárias delas são criadas aos poucos). É a única definição de
+     * ocupação usada tanto pelo índice de disponibilidade quanto pelo check-in de grupo.
+     * Quando {@code quartoIds} é nulo, considera todos os quartos.
+     */
+    public List<PeriodoOcupado> listarPeriodosOcupados(LocalDate inicio, LocalDate fim, Collection<Long> quartoIds) {
+        String filtroDiaria = quartoIds != null ? " AND d.quarto_id = ANY (?)" : "";
+        String filtroPernoite = quartoIds != null ? " AND p.quarto_id = ANY (?)" : "";
+        String sql = """
+            SELECT d.quarto_id, d.data_inicio, d.data_fim
+            FROM diaria d
+            WHERE NOT d.cancelada
+              AND d.data_inicio < ?
+              AND d.data_fim > ?
+            """ + filtroDiaria + """
+
+            UNION ALL
+            SELECT p.quarto_id, p.data_entrada, p.data_saida
+            FROM pernoite p
+            WHERE p.longa_permanencia
+              AND p.ativo
+              AND p.data_entrada < ?
+              AND p.data_saida > ?
+            """ + filtroPernoite;
+
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            ps.setObject(i++, fim);
+            ps.setObject(i++, inicio);
+            if (quartoIds != null) ps.setArray(i++, ps.getConnection().createArrayOf("bigint", quartoIds.toArray()));
+            ps.setObject(i++, fim);
+            ps.setObject(i++, inicio);
+            if (quartoIds != null) ps.setArray(i, ps.getConnection().createArrayOf("bigint", quartoIds.toArray()));
+        }, (rs, i) -> new PeriodoOcupado(
+                rs.getLong("quarto_id"),
+                rs.getObject("data_inicio", LocalDate.class),
+                rs.getObject("data_fim", LocalDate.class)
+        ));
+    }
+
+    /**
+     * Consulta direta ao banco, usada quando o período pedido sai do horizonte do índice de ocupação.
+     */
+    public List<QuartoCapacidade> listarDisponiveis(LocalDate inicio, LocalDate fim, int pessoas) {
+        String sql = """
+            SELECT q.id, q.descricao, q.quantidade_pessoas, c.categoria
+            FROM quarto q
+            LEFT JOIN categoria c ON q.fk_categoria = c.id
+            WHERE COALESCE(q.quantidade_pessoas, 0) >= ?
+              AND NOT EXISTS (
+                  SELECT 1
+                  FROM diaria d
+                  WHERE d.quarto_id = q.id
+                    AND NOT d.cancelada
+                    AND d.data_inicio < ?
+                    AND d.data_fim > ?
+              )
+              AND NOT EXISTS (
+                  SELECT 1
+                  FROM pernoite p
+                  WHERE p.quarto_id = q.id
+                    AND p.longa_permanencia
+                    AND p.ativo
+                    AND p.data_entrada < ?
+                    AND p.data_saida > ?
+              )
+            ORDER BY q.id
+        """;
+        return jdbcTemplate.query(sql, (rs, i) -> new QuartoCapacidade(
+                rs.getLong("id"),
+                rs.getString("descricao"),
+                rs.getString("categoria"),
+                rs.getObject("quantidade_pessoas", Integer.class)
+        ), pessoas, fim, inicio, fim, inicio);
+    }
+
     public Long inserirQuarto(CreateQuartoRequest req) {
         final String sql = """
             INSERT INTO quarto (
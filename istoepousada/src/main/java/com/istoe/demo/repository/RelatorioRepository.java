@@ -1,33 +1,41 @@
 package com.istoe.demo.repository;
 
 import com.istoe.demo.request.RelatorioRequest;
+import com.istoe.demo.response.FechamentoCaixaResponse;
 import com.istoe.demo.response.FuncionarioResponse;
 import com.istoe.demo.response.ObjetoResponse;
 import com.istoe.demo.response.RelatorioResponse;
+import com.istoe.demo.response.ResumoCaixaResponse;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Repository
 public class RelatorioRepository {
 
+    private static final int FETCH_SIZE_EXPORTACAO = 1000;
+
     private final JdbcTemplate jdbcTemplate;
-    private final TipoPagamentoRepository tipoPagamentoRepository;
 
-    public RelatorioRepository(JdbcTemplate jdbcTemplate, TipoPagamentoRepository tipoPagamentoRepository) {
+    public RelatorioRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.tipoPagamentoRepository = tipoPagamentoRepository;
     }
 
+    @Transactional
     public RelatorioResponse save(RelatorioRequest request) {
         String sql = """
                 INSERT INTO relatorio (
@@ -51,9 +59,11 @@ public class RelatorioRepository {
         }, keyHolder);
 
         Long id = keyHolder.getKey().longValue();
+        aplicarNoResumoDiario(id, 1);
         return findById(id);
     }
 
+    @Transactional
     public RelatorioResponse update(Long id, RelatorioRequest request) {
         String sql = """
                 UPDATE relatorio SET
@@ -64,12 +74,15 @@ public class RelatorioRepository {
                 WHERE id = ?
                 """;
 
+        bloquear(id);
+        aplicarNoResumoDiario(id, -1);
         jdbcTemplate.update(sql,
                 request.fkTipoPagamento(),
                 request.relatorio(),
                 request.valor(),
                 request.quartoId(),
                 id);
+        aplicarNoResumoDiario(id, 1);
         return findById(id);
     }
 
@@ -120,7 +133,16 @@ public class RelatorioRepository {
         return jdbcTemplate.queryForObject(sql, new Object[]{id}, new RelatorioRowMapper());
     }
 
-    public List<RelatorioResponse> findByFilters(LocalDate dataInicio, LocalDate dataFim, Long tipoPagamentoId, Long quartoId, Long pernoiteId) {
+    /**
+     * Lançamentos filtrados, do mais recente para o mais antigo. O período é aplicado como
+     * intervalo semiaberto sobre {@code data_hora} ([dataInicio 00:00, dataFim + 1 dia 00:00)),
+     * para que os índices da coluna sejam usados. A ordem é (data_hora, id) decrescentes, a mesma
+     * dos índices; com {@code limite}, devolve uma página que continua depois de
+     * ({@code cursorDataHora}, {@code cursorId}), o último lançamento da página anterior.
+     */
+    public List<RelatorioResponse> findByFilters(LocalDate dataInicio, LocalDate dataFim, Long tipoPagamentoId,
+                                                 Long quartoId, Long pernoiteId,
+                                                 LocalDateTime cursorDataHora, Long cursorId, Integer limite) {
         StringBuilder sql = new StringBuilder("""
                 SELECT
                 r.id,
@@ -143,13 +165,13 @@ public class RelatorioRepository {
         List<Object> params = new ArrayList<>();
 
         if (dataInicio != null) {
-            sql.append(" AND DATE(r.data_hora) >= ?");
-            params.add(dataInicio);
+            sql.append(" AND r.data_hora >= ?");
+            params.add(dataInicio.atStartOfDay());
         }
 
         if (dataFim != null) {
-            sql.append(" AND DATE(r.data_hora) <= ?");
-            params.add(dataFim);
+            sql.append(" AND r.data_hora < ?");
+            params.add(dataFim.plusDays(1).atStartOfDay());
         }
 
         if (tipoPagamentoId != null) {
@@ -167,17 +189,267 @@ public class RelatorioRepository {
             params.add(pernoiteId);
         }
 
-        sql.append(" order by id desc");
+        if (cursorDataHora != null && cursorId != null) {
+            sql.append(" AND (r.data_hora, r.id) < (?, ?)");
+            params.add(cursorDataHora);
+            params.add(cursorId);
+        }
+
+        sql.append(" ORDER BY r.data_hora DESC, r.id DESC");
+
+        if (limite != null) {
+            sql.append(" LIMIT ?");
+            params.add(limite);
+        }
 
         return jdbcTemplate.query(sql.toString(), params.toArray(), new RelatorioRowMapper());
     }
 
+    /**
+     * Totais do período em uma única consulta com GROUPING SETS: geral e por dia, cada um
+     * também por tipo de pagamento, por funcionário e por quarto. As colunas GROUPING indicam
+     * a qual agrupamento cada linha pertence.
+     */
+    public FechamentoCaixaResponse fechamentoCaixa(LocalDate inicio, LocalDate fim) {
+        String sql = """
+                SELECT dia,
+                       tipo_pagamento_id, tipo_pagamento,
+                       funcionario_id, funcionario,
+                       quarto_id, quarto,
+                       COALESCE(SUM(valor), 0)          AS valor,
+                       COUNT(*)                         AS lancamentos,
+                       GROUPING(dia) = 0                AS por_dia,
+                       GROUPING(tipo_pagamento_id) = 0  AS por_tipo_pagamento,
+                       GROUPING(funcionario_id) = 0     AS por_funcionario,
+                       GROUPING(quarto_id) = 0          AS por_quarto
+                FROM (
+                    SELECT r.data_hora::date      AS dia,
+                           r.valor,
+                           r.fk_tipo_pagamento    AS tipo_pagamento_id,
+                           tp.descricao           AS tipo_pagamento,
+                           r.fk_funcionario       AS funcionario_id,
+                           f.nome_completo        AS funcionario,
+                           r.quarto_id,
+                           q.descricao            AS quarto
+                    FROM relatorio r
+                    LEFT JOIN tipo_pagamento tp ON tp.id = r.fk_tipo_pagamento
+                    LEFT JOIN public.funcionario f ON f.id = r.fk_funcionario
+                    LEFT JOIN quarto q ON q.id = r.quarto_id
+                    WHERE r.data_hora >= ? AND r.data_hora < ?
+                ) lancamento
+                GROUP BY GROUPING SETS (
+                    (),
+                    (tipo_pagamento_id, tipo_pagamento),
+                    (funcionario_id, funcionario),
+                    (quarto_id, quarto),
+                    (dia),
+                    (dia, tipo_pagamento_id, tipo_pagamento),
+                    (dia, funcionario_id, funcionario),
+                    (dia, quarto_id, quarto)
+                )
+                ORDER BY dia NULLS FIRST, valor DESC
+                """;
+
+        Acumulador geral = new Acumulador();
+        Map<LocalDate, Acumulador> porDia = new TreeMap<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            Acumulador alvo = rs.getBoolean("por_dia")
+                    ? porDia.computeIfAbsent(rs.getObject("dia", LocalDate.class), d -> new Acumulador())
+                    : geral;
+            double valor = rs.getDouble("valor");
+            long lancamentos = rs.getLong("lancamentos");
 
+            if (rs.getBoolean("por_tipo_pagamento")) {
+                alvo.tiposPagamento.add(new FechamentoCaixaResponse.Item(
+                        rs.getObject("tipo_pagamento_id", Long.class), rs.getString("tipo_pagamento"), valor, lancamentos));
+            } else if (rs.getBoolean("por_funcionario")) {
+                alvo.funcionarios.add(new FechamentoCaixaResponse.Item(
+                        rs.getObject("funcionario_id", Long.class), rs.getString("funcionario"), valor, lancamentos));
+            } else if (rs.getBoolean("por_quarto")) {
+                alvo.quartos.add(new FechamentoCaixaResponse.Item(
+                        rs.getObject("quarto_id", Long.class), rs.getString("quarto"), valor, lancamentos));
+            } else {
+                alvo.valor = valor;
+                alvo.lancamentos = lancamentos;
+            }
+        }, inicio.atStartOfDay(), fim.plusDays(1).atStartOfDay());
+
+        List<FechamentoCaixaResponse.Dia> dias = porDia.entrySet().stream()
+                .map(e -> new FechamentoCaixaResponse.Dia(e.getKey(), e.getValue().totais()))
+                .toList();
+        return new FechamentoCaixaResponse(inicio, fim, geral.totais(), dias);
+    }
+
+    /**
+     * Percorre os lançamentos do período em ordem de data com um cursor somente-leitura de
+     * {@link #FETCH_SIZE_EXPORTACAO} linhas por ida ao banco. Deve rodar dentro de uma transação,
+     * senão o driver do PostgreSQL ignora o fetch size e carrega o resultado inteiro.
+     */
+    public <T> T exportar(LocalDate dataInicio, LocalDate dataFim, ResultSetExtractor<T> extrator) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT
+                r.id,
+                r.data_hora,
+                tp.descricao    as tipo_pagamento,
+                r.valor,
+                r.quarto_id,
+                r.pernoite_id,
+                r.entrada_id,
+                f.nome_completo as funcionario,
+                r.relatorio
+                FROM relatorio r
+                LEFT JOIN tipo_pagamento tp ON r.fk_tipo_pagamento = tp.id
+                LEFT JOIN public.funcionario f on f.id = r.fk_funcionario
+                WHERE 1=1
+                """);
+
+        List<Object> params = new ArrayList<>();
+        if (dataInicio != null) {
+            sql.append(" AND r.data_hora >= ?");
+            params.add(dataInicio.atStartOfDay());
+        }
+        if (dataFim != null) {
+            sql.append(" AND r.data_hora < ?");
+            params.add(dataFim.plusDays(1).atStartOfDay());
+        }
+        sql.append(" order by r.data_hora, r.id");
+
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE_EXPORTACAO);
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            return ps;
+        }, extrator);
+    }
+
+    private static final class Acumulador {
+        double valor;
+        long lancamentos;
+        final List<FechamentoCaixaResponse.Item> tiposPagamento = new ArrayList<>();
+        final List<FechamentoCaixaResponse.Item> funcionarios = new ArrayList<>();
+        final List<FechamentoCaixaResponse.Item> quartos = new ArrayList<>();
+
+        FechamentoCaixaResponse.Totais totais() {
+            return new FechamentoCaixaResponse.Totais(valor, lancamentos, tiposPagamento, funcionarios, quartos);
+        }
+    }
+
+    @Transactional
     public void deleteById(Long id) {
+        bloquear(id);
+        aplicarNoResumoDiario(id, -1);
         String sql = "DELETE FROM relatorio WHERE id = ?";
         jdbcTemplate.update(sql, id);
     }
 
+    /**
+     * Trava a linha do lançamento até o fim da transação. Vem antes de subtrair o valor atual do
+     * resumo diário: sem a trava, duas alterações simultâneas leriam o mesmo valor antigo e uma delas
+     * descontaria um valor que já não existe.
+     */
+    private void bloquear(Long id) {
+        jdbcTemplate.query("SELECT id FROM relatorio WHERE id = ? FOR UPDATE", rs -> { }, id);
+    }
+
+    /**
+     * Soma ({@code sinal} = 1) ou subtrai ({@code sinal} = -1) o lançamento do resumo diário do seu
+     * dia e tipo de pagamento. Lançamentos sem tipo ficam sob o tipo 0.
+     */
+    private void aplicarNoResumoDiario(Long id, int sinal) {
+        String sql = """
+                INSERT INTO relatorio_resumo_diario (dia, tipo_pagamento_id, valor, lancamentos)
+                SELECT r.data_hora::date, COALESCE(r.fk_tipo_pagamento, 0), COALESCE(r.valor, 0) * ?, ?
+                FROM relatorio r
+                WHERE r.id = ?
+                ON CONFLICT (dia, tipo_pagamento_id) DO UPDATE SET
+                    valor       = relatorio_resumo_diario.valor + EXCLUDED.valor,
+                    lancamentos = relatorio_resumo_diario.lancamentos + EXCLUDED.lancamentos
+                """;
+        jdbcTemplate.update(sql, sinal, sinal, id);
+    }
+
+    /**
+     * Regera o resumo diário de [inicio, fim] a partir de {@code relatorio}. A tabela relatorio fica
+     * bloqueada para escrita durante a regeração, para que nenhum delta se perca entre o DELETE e o INSERT.
+     */
+    @Transactional
+    public int reconstruirResumoDiario(LocalDate inicio, LocalDate fim) {
+        jdbcTemplate.execute("LOCK TABLE relatorio IN SHARE MODE");
+        jdbcTemplate.update("DELETE FROM relatorio_resumo_diario WHERE dia >= ? AND dia <= ?", inicio, fim);
+
+        String sql = """
+                INSERT INTO relatorio_resumo_diario (dia, tipo_pagamento_id, valor, lancamentos)
+                SELECT r.data_hora::date, COALESCE(r.fk_tipo_pagamento, 0), COALESCE(SUM(r.valor), 0), COUNT(*)
+                FROM relatorio r
+                WHERE r.data_hora >= ? AND r.data_hora < ?
+                GROUP BY 1, 2
+                """;
+        return jdbcTemplate.update(sql, inicio.atStartOfDay(), fim.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Dia do lançamento mais antigo, ou {@code null} se não houver lançamentos.
+     */
+    public LocalDate primeiroDiaLancamento() {
+        return jdbcTemplate.queryForObject("SELECT MIN(data_hora)::date FROM relatorio", LocalDate.class);
+    }
+
+    public boolean resumoDiarioVazio() {
+        Boolean vazio = jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM relatorio_resumo_diario)", Boolean.class);
+        return Boolean.TRUE.equals(vazio);
+    }
+
+    /**
+     * Totais do período lidos só do resumo diário: o custo depende do número de dias, não de lançamentos.
+     */
+    public ResumoCaixaResponse resumoCaixa(LocalDate inicio, LocalDate fim) {
+        String sql = """
+                SELECT t.*, tp.descricao AS tipo_pagamento_descricao
+                FROM (
+                    SELECT dia,
+                           tipo_pagamento_id,
+                           SUM(valor)                       AS valor,
+                           SUM(lancamentos)                 AS lancamentos,
+                           GROUPING(dia) = 0                AS por_dia,
+                           GROUPING(tipo_pagamento_id) = 0  AS por_tipo_pagamento
+                    FROM relatorio_resumo_diario
+                    WHERE dia >= ? AND dia <= ? AND lancamentos <> 0
+                    GROUP BY GROUPING SETS ((), (tipo_pagamento_id), (dia), (dia, tipo_pagamento_id))
+                ) t
+                LEFT JOIN tipo_pagamento tp ON tp.id = t.tipo_pagamento_id
+                ORDER BY t.dia NULLS FIRST, t.valor DESC
+                """;
+
+        Acumulador geral = new Acumulador();
+        Map<LocalDate, Acumulador> porDia = new TreeMap<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            Acumulador alvo = rs.getBoolean("por_dia")
+                    ? porDia.computeIfAbsent(rs.getObject("dia", LocalDate.class), d -> new Acumulador())
+                    : geral;
+            double valor = rs.getDouble("valor");
+            long lancamentos = rs.getLong("lancamentos");
+
+            if (rs.getBoolean("por_tipo_pagamento")) {
+                long tipoId = rs.getLong("tipo_pagamento_id");
+                alvo.tiposPagamento.add(new FechamentoCaixaResponse.Item(
+                        tipoId != 0 ? tipoId : null, rs.getString("tipo_pagamento_descricao"), valor, lancamentos));
+            } else {
+                alvo.valor = valor;
+                alvo.lancamentos = lancamentos;
+            }
+        }, inicio, fim);
+
+        List<ResumoCaixaResponse.Dia> dias = porDia.entrySet().stream()
+                .map(e -> new ResumoCaixaResponse.Dia(
+                        e.getKey(), e.getValue().valor, e.getValue().lancamentos, e.getValue().tiposPagamento))
+                .toList();
+        return new ResumoCaixaResponse(inicio, fim, geral.valor, geral.lancamentos, geral.tiposPagamento, dias);
+    }
+
     public boolean existsById(Long id) {
         String sql = "SELECT COUNT(*) FROM relatorio WHERE id = ?";
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
@@ -187,8 +459,11 @@ public class RelatorioRepository {
     private class RelatorioRowMapper implements RowMapper<RelatorioResponse> {
         @Override
         public RelatorioResponse mapRow(ResultSet rs, int rowNum) throws SQLException {
-            Long tipoPagamentoId = rs.getLong("tipo_pagamento_id");
-            ObjetoResponse tipoPagamento = tipoPagamentoRepository.findById(tipoPagamentoId);
+            Long tipoPagamentoId = rs.getObject("tipo_pagamento_id", Long.class);
+            // a consulta já traz o tipo de pagamento pelo join, sempre com a descrição atual
+            ObjetoResponse tipoPagamento = tipoPagamentoId != null
+                    ? new ObjetoResponse(tipoPagamentoId, rs.getString("tipo_pagamento_descricao"))
+                    : null;
 
             ObjetoResponse funcionario = new ObjetoResponse(
                     rs.getLong("funcionario_id"),
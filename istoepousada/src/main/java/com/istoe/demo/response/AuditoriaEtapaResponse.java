@@ -0,0 +1,12 @@
+package com.istoe.demo.response;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public record AuditoriaEtapaResponse(
+        LocalDate dataReferencia,
+        String etapa,
+        Integer linhas,
+        Long duracaoMs,
+        LocalDateTime executadoEm
+) {}
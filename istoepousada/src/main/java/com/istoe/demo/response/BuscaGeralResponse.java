@@ -0,0 +1,15 @@
+package com.istoe.demo.response;
+
+public record BuscaGeralResponse(
+        Tipo tipo,
+        Long id,
+        String titulo,
+        String detalhe,
+        Double relevancia
+) {
+    public enum Tipo {
+        PESSOA,
+        EMPRESA,
+        QUARTO
+    }
+}
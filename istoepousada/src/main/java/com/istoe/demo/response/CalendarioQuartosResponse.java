@@ -0,0 +1,24 @@
+package com.istoe.demo.response;
+
+import com.istoe.demo.enums.RoomStatusEnum;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Calendário de ocupação em formato colunar: cada quarto traz um array por atributo,
+ * com uma posição por dia a partir de {@code inicio} (posição {@code i} = {@code inicio + i}).
+ */
+public record CalendarioQuartosResponse(
+        LocalDate inicio,
+        LocalDate fim,
+        List<Quarto> quartos
+) {
+    public record Quarto(
+            Long id,
+            String descricao,
+            String categoria,
+            List<RoomStatusEnum> status,
+            List<Long> titulares
+    ) {}
+}
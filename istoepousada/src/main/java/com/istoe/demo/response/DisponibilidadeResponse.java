@@ -0,0 +1,8 @@
+package com.istoe.demo.response;
+
+public record DisponibilidadeResponse(
+        Long id,
+        String descricao,
+        String categoria,
+        Integer capacidade
+) {}
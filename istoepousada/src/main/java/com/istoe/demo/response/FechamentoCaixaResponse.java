@@ -0,0 +1,35 @@
+package com.istoe.demo.response;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Fechamento de caixa de um período: o total geral e o de cada dia, ambos abertos
+ * por tipo de pagamento, por funcionário e por quarto.
+ */
+public record FechamentoCaixaResponse(
+        LocalDate inicio,
+        LocalDate fim,
+        Totais total,
+        List<Dia> dias
+) {
+    public record Dia(
+            LocalDate data,
+            Totais total
+    ) {}
+
+    public record Totais(
+            double valor,
+            long lancamentos,
+            List<Item> tiposPagamento,
+            List<Item> funcionarios,
+            List<Item> quartos
+    ) {}
+
+    public record Item(
+            Long id,
+            String descricao,
+            double valor,
+            long lancamentos
+    ) {}
+}
@@ -0,0 +1,15 @@
+package com.istoe.demo.response;
+
+import java.util.List;
+
+public record LotePernoiteResponse(
+        boolean sucesso,
+        List<Item> itens
+) {
+    public record Item(
+            int indice,
+            Long quarto,
+            Long pernoiteId,
+            String erro
+    ) {}
+}
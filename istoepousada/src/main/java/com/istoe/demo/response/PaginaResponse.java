@@ -0,0 +1,11 @@
+package com.istoe.demo.response;
+
+import java.util.List;
+
+/**
+ * Página genérica de uma listagem por cursor; {@code proximoCursor} é nulo na última página.
+ */
+public record PaginaResponse<T>(
+        List<T> itens,
+        String proximoCursor
+) {}
@@ -0,0 +1,47 @@
+package com.istoe.demo.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.istoe.demo.enums.StatusPernoiteEnum;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDate;
+
+public record PernoiteResumoResponse(
+        Long id,
+        Long quartoId,
+        String quartoDescricao,
+        String dataEntrada,
+        String dataSaida,
+        String horaChegada,
+        String horaSaida,
+        String status,
+        Double valorTotal,
+        Boolean ativo,
+        String representanteNome,
+        String representanteCpf,
+
+        // usada apenas para montar o cursor da próxima página
+        @JsonIgnore
+        LocalDate dataEntradaCursor
+) {
+    public static final RowMapper<PernoiteResumoResponse> ROW_MAPPER = (rs, rowNum) -> {
+        int statusCodigo = rs.getInt("status_pernoite_enum");
+        StatusPernoiteEnum status = rs.wasNull() ? null : StatusPernoiteEnum.fromValue(statusCodigo);
+
+        return new PernoiteResumoResponse(
+                rs.getLong("id"),
+                rs.getObject("quarto_id", Long.class),
+                rs.getString("quarto_descricao"),
+                rs.getString("data_entrada_fmt"),
+                rs.getString("data_saida_fmt"),
+                "00:00",
+                "00:00",
+                status != null ? status.name() : "DESCONHECIDO",
+                rs.getObject("valot_total", Double.class),
+                rs.getObject("ativo", Boolean.class),
+                rs.getString("representante_nome"),
+                rs.getString("representante_cpf"),
+                rs.getObject("data_entrada", LocalDate.class)
+        );
+    };
+}
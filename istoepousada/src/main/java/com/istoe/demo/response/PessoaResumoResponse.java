@@ -0,0 +1,20 @@
+package com.istoe.demo.response;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Projeção mínima de pessoa usada nos seletores de hóspede (check-in, vínculos).
+ */
+public record PessoaResumoResponse(
+        Long id,
+        String nome,
+        String cpf,
+        String telefone
+) {
+    public static final RowMapper<PessoaResumoResponse> ROW_MAPPER = (rs, i) -> new PessoaResumoResponse(
+            rs.getLong("id"),
+            rs.getString("nome"),
+            rs.getString("cpf"),
+            rs.getString("telefone")
+    );
+}
@@ -0,0 +1,29 @@
+package com.istoe.demo.response;
+
+import com.istoe.demo.enums.RoomStatusEnum;
+
+import java.time.LocalDate;
+
+/**
+ * Alteração de um quarto no quadro do dia. Quando o quarto não tem hóspede, os campos do titular vêm nulos;
+ * quando o quarto deixou de existir, {@code status} também vem nulo.
+ */
+public record QuartoDeltaResponse(
+        Long quartoId,
+        RoomStatusEnum status,
+        Long titularId,
+        String titularNome,
+        LocalDate checkout
+) {
+    public static QuartoDeltaResponse of(Long quartoId, RoomsResponse.Categoria.Room room) {
+        if (room == null) return new QuartoDeltaResponse(quartoId, null, null, null, null);
+        RoomsResponse.Categoria.Room.Holder holder = room.holder();
+        return new QuartoDeltaResponse(
+                quartoId,
+                room.roomStatusEnum(),
+                holder != null ? holder.id() : null,
+                holder != null ? holder.name() : null,
+                holder != null ? holder.checkout() : null
+        );
+    }
+}
@@ -0,0 +1,24 @@
+package com.istoe.demo.response;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Totais de caixa de um período lidos do resumo diário: o total geral e o de cada dia,
+ * abertos por tipo de pagamento.
+ */
+public record ResumoCaixaResponse(
+        LocalDate inicio,
+        LocalDate fim,
+        double valor,
+        long lancamentos,
+        List<FechamentoCaixaResponse.Item> tiposPagamento,
+        List<Dia> dias
+) {
+    public record Dia(
+            LocalDate data,
+            double valor,
+            long lancamentos,
+            List<FechamentoCaixaResponse.Item> tiposPagamento
+    ) {}
+}
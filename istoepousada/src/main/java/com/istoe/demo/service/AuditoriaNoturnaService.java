@@ -0,0 +1,92 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.repository.AuditoriaNoturnaRepository;
+import com.istoe.demo.response.AuditoriaEtapaResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Auditoria noturna: fecha as diárias vencidas, finaliza os pernoites conforme os pagamentos
+ * e manda os quartos liberados para limpeza. Cada etapa é um único UPDATE sobre todo o hotel,
+ * roda na própria transação e fica registrada em {@code auditoria_noturna}; uma execução
+ * interrompida é retomada a partir da primeira etapa não registrada.
+ */
+@Service
+public class AuditoriaNoturnaService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditoriaNoturnaService.class);
+
+    static final String ETAPA_ENCERRAR_DIARIAS = "ENCERRAR_DIARIAS";
+    static final String ETAPA_FINALIZAR_PERNOITES = "FINALIZAR_PERNOITES";
+    static final String ETAPA_LIMPEZA_QUARTOS = "LIMPEZA_QUARTOS";
+
+    private final AuditoriaNoturnaRepository auditoriaRepository;
+    private final QuadroQuartosService quadroQuartosService;
+    private final TransactionTemplate transactionTemplate;
+
+    public AuditoriaNoturnaService(AuditoriaNoturnaRepository auditoriaRepository,
+                                   QuadroQuartosService quadroQuartosService,
+                                   PlatformTransactionManager transactionManager) {
+        this.auditoriaRepository = auditoriaRepository;
+        this.quadroQuartosService = quadroQuartosService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${auditoria.noturna.cron:0 15 0 * * *}")
+    public void executarAuditoriaAgendada() {
+        executar(LocalDate.now(), false);
+    }
+
+    /**
+     * Executa a auditoria para a data de referência. Etapas já registradas para a data são puladas,
+     * a não ser que {@code refazer} seja verdadeiro; como todas são idempotentes, refazer é seguro.
+     * Datas futuras são recusadas: encerrariam diárias e liberariam quartos de hóspedes ainda na casa.
+     */
+    public synchronized List<AuditoriaEtapaResponse> executar(LocalDate dataReferencia, boolean refazer) {
+        LocalDate data = dataReferencia != null ? dataReferencia : LocalDate.now();
+        if (data.isAfter(LocalDate.now()))
+            throw new IllegalArgumentException("A auditoria noturna não pode ser executada para uma data futura.");
+        Set<String> concluidas = refazer ? Set.of() : auditoriaRepository.listarEtapasConcluidas(data);
+        long inicio = System.nanoTime();
+
+        executarEtapa(data, ETAPA_ENCERRAR_DIARIAS, concluidas, auditoriaRepository::encerrarDiarias);
+        executarEtapa(data, ETAPA_FINALIZAR_PERNOITES, concluidas, auditoriaRepository::finalizarPernoites);
+        List<Long> quartosLiberados = new ArrayList<>();
+        executarEtapa(data, ETAPA_LIMPEZA_QUARTOS, concluidas, d -> {
+            quartosLiberados.addAll(auditoriaRepository.liberarQuartosParaLimpeza(d));
+            return quartosLiberados.size();
+        });
+        quartosLiberados.forEach(quadroQuartosService::recarregarQuarto);
+
+        log.info("Auditoria noturna de {} concluída em {} ms", data, (System.nanoTime() - inicio) / 1_000_000);
+        return auditoriaRepository.listarExecucoes(data);
+    }
+
+    public List<AuditoriaEtapaResponse> listarExecucoes(LocalDate dataReferencia) {
+        return auditoriaRepository.listarExecucoes(dataReferencia != null ? dataReferencia : LocalDate.now());
+    }
+
+    private void executarEtapa(LocalDate data, String etapa, Set<String> concluidas, ToIntFunction<LocalDate> acao) {
+        if (concluidas.contains(etapa)) {
+            log.debug("Auditoria noturna de {}: etapa {} já concluída, pulando", data, etapa);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            long inicio = System.nanoTime();
+            int linhas = acao.applyAsInt(data);
+            long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+            auditoriaRepository.registrarEtapa(data, etapa, linhas, duracaoMs);
+            log.info("Auditoria noturna de {}: etapa {} alterou {} linha(s) em {} ms", data, etapa, linhas, duracaoMs);
+        });
+    }
+}
@@ -0,0 +1,239 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.event.CadastroAlteradoEvent;
+import com.istoe.demo.event.QuartoAlteradoEvent;
+import com.istoe.demo.repository.BuscaGeralRepository;
+import com.istoe.demo.repository.BuscaGeralRepository.Registro;
+import com.istoe.demo.response.BuscaGeralResponse;
+import com.istoe.demo.response.BuscaGeralResponse.Tipo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice em memória da busca geral da recepção (pessoas, empresas e quartos).
+ * <p>
+ * Cada registro é quebrado em trigramas, no mesmo esquema do pg_trgm (palavras sem acento, em minúsculas,
+ * com dois espaços antes e um depois), e o índice invertido guarda quais registros contêm cada trigrama.
+ * A relevância é a similaridade de trigramas entre termo e registro, com bônus para quem começa com
+ * o termo, quem o contém e para CPF/CNPJ idênticos; por ser por trigramas, tolera erros de digitação.
+ * O índice é montado na subida da aplicação e atualizado registro a registro pelos eventos de cadastro.
+ */
+@Service
+public class BuscaGeralService {
+
+    private static final Logger log = LoggerFactory.getLogger(BuscaGeralService.class);
+
+    private static final double SIMILARIDADE_MINIMA = 0.3;
+    private static final int LIMITE_PADRAO = 10;
+    private static final int LIMITE_MAXIMO = 50;
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NAO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+
+    private final BuscaGeralRepository buscaGeralRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entrada> entradas = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    // Durante uma reconstrução, os registros relidos pelos eventos (o último por chave), para serem
+    // reaplicados sobre a leitura completa, que pode ser mais antiga. Nulo fora da reconstrução.
+    private Map<Long, List<Registro>> alteradosNaReconstrucao;
+
+    public BuscaGeralService(BuscaGeralRepository buscaGeralRepository) {
+        this.buscaGeralRepository = buscaGeralRepository;
+    }
+
+    private record Entrada(Registro registro, String texto, String documento, Set<String> trigramas) { }
+
+    public List<BuscaGeralResponse> buscar(String termo, Integer limite) {
+        if (termo == null || termo.isBlank()) return List.of();
+        int max = limite == null || limite <= 0 ? LIMITE_PADRAO : Math.min(limite, LIMITE_MAXIMO);
+
+        String texto = normalizar(termo);
+        String digitos = termo.replaceAll("[^0-9]", "");
+        Set<String> trigramasTermo = trigramas(texto);
+        if (!digitos.isEmpty()) trigramasTermo.addAll(trigramas(digitos));
+        if (trigramasTermo.isEmpty()) return List.of();
+
+        PriorityQueue<BuscaGeralResponse> melhores =
+                new PriorityQueue<>(Comparator.comparingDouble(BuscaGeralResponse::relevancia));
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> comuns = new HashMap<>();
+            for (String trigrama : trigramasTermo) {
+                Set<Long> chaves = postings.get(trigrama);
+                if (chaves == null) continue;
+                for (Long chave : chaves) comuns.merge(chave, 1, Integer::sum);
+            }
+
+            for (Map.Entry<Long, Integer> candidato : comuns.entrySet()) {
+                Entrada entrada = entradas.get(candidato.getKey());
+                int emComum = candidato.getValue();
+                double relevancia = (double) emComum
+                        / (trigramasTermo.size() + entrada.trigramas().size() - emComum);
+
+                if (!digitos.isEmpty() && digitos.equals(entrada.documento())) relevancia += 2.0;
+                else if (entrada.texto().startsWith(texto)) relevancia += 1.0;
+                else if (entrada.texto().contains(texto)
+                        || (digitos.length() >= 3 && entrada.documento().contains(digitos))) relevancia += 0.5;
+                else if (relevancia < SIMILARIDADE_MINIMA) continue;
+
+                Registro registro = entrada.registro();
+                melhores.add(new BuscaGeralResponse(
+                        registro.tipo(), registro.id(), registro.titulo(), registro.detalhe(), relevancia));
+                if (melhores.size() > max) melhores.poll();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<BuscaGeralResponse> resultado = new ArrayList<>(melhores);
+        resultado.sort(Comparator.comparingDouble(BuscaGeralResponse::relevancia).reversed()
+                .thenComparing(BuscaGeralResponse::tipo)
+                .thenComparing(BuscaGeralResponse::id));
+        return resultado;
+    }
+
+    /**
+     * Relê todos os registros e troca o índice. A leitura roda sem a trava; os eventos que chegam
+     * nesse meio-tempo continuam atualizando o índice atual e ficam guardados para serem reaplicados
+     * depois da troca, para que a leitura completa não sobrescreva uma alteração mais nova.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        long inicio = System.nanoTime();
+
+        lock.writeLock().lock();
+        try {
+            alteradosNaReconstrucao = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Registro> registros = new ArrayList<>();
+        try {
+            registros.addAll(buscaGeralRepository.listarPessoas(null));
+            registros.addAll(buscaGeralRepository.listarEmpresas(null));
+            registros.addAll(buscaGeralRepository.listarQuartos(null));
+        } catch (RuntimeException e) {
+            // leitura falhou: o índice atual, já com os eventos aplicados, continua valendo
+            lock.writeLock().lock();
+            try {
+                alteradosNaReconstrucao = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        int reaplicados;
+        lock.writeLock().lock();
+        try {
+            Map<Long, List<Registro>> alterados = alteradosNaReconstrucao;
+            alteradosNaReconstrucao = null;
+            reaplicados = alterados.size();
+
+            entradas.clear();
+            postings.clear();
+            registros.forEach(this::indexar);
+            alterados.forEach((chave, atuais) -> {
+                remover(chave);
+                atuais.forEach(this::indexar);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice da busca geral montado com {} registros ({} reaplicados) em {} ms",
+                registros.size(), reaplicados, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCadastroAlterado(CadastroAlteradoEvent event) {
+        if (event.id() == null) return;
+        switch (event.entidade()) {
+            case PESSOA -> atualizar(Tipo.PESSOA, event.id(), buscaGeralRepository.listarPessoas(event.id()));
+            case EMPRESA -> atualizar(Tipo.EMPRESA, event.id(), buscaGeralRepository.listarEmpresas(event.id()));
+        }
+    }
+
+    @EventListener
+    public void onQuartoAlterado(QuartoAlteradoEvent event) {
+        atualizar(Tipo.QUARTO, event.quartoId(), buscaGeralRepository.listarQuartos(event.quartoId()));
+    }
+
+    private void atualizar(Tipo tipo, Long id, List<Registro> registros) {
+        lock.writeLock().lock();
+        try {
+            long chave = chave(tipo, id);
+            remover(chave);
+            registros.forEach(this::indexar);
+            if (alteradosNaReconstrucao != null) alteradosNaReconstrucao.put(chave, registros);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexar(Registro registro) {
+        String texto = normalizar(registro.titulo());
+        String documento = registro.documento() != null ? registro.documento().replaceAll("[^0-9]", "") : "";
+
+        Set<String> trigramas = trigramas(texto);
+        if (!documento.isEmpty()) trigramas.addAll(trigramas(documento));
+
+        long chave = chave(registro.tipo(), registro.id());
+        entradas.put(chave, new Entrada(registro, texto, documento, trigramas));
+        for (String trigrama : trigramas) {
+            postings.computeIfAbsent(trigrama, t -> new HashSet<>()).add(chave);
+        }
+    }
+
+    private void remover(long chave) {
+        Entrada anterior = entradas.remove(chave);
+        if (anterior == null) return;
+        for (String trigrama : anterior.trigramas()) {
+            Set<Long> chaves = postings.get(trigrama);
+            if (chaves == null) continue;
+            chaves.remove(chave);
+            if (chaves.isEmpty()) postings.remove(trigrama);
+        }
+    }
+
+    private static long chave(Tipo tipo, Long id) {
+        return ((long) tipo.ordinal() << 56) | id;
+    }
+
+    static String normalizar(String valor) {
+        if (valor == null) return "";
+        String semAcento = MARCAS.matcher(Normalizer.normalize(valor, Normalizer.Form.NFD)).replaceAll("");
+        return NAO_ALFANUMERICO.matcher(semAcento.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static Set<String> trigramas(String texto) {
+        Set<String> trigramas = new HashSet<>();
+        for (String palavra : texto.split(" ")) {
+            if (palavra.isEmpty()) continue;
+            String comBorda = "  " + palavra + " ";
+            for (int i = 0; i + 3 <= comBorda.length(); i++) {
+                trigramas.add(comBorda.substring(i, i + 3));
+            }
+        }
+        return trigramas;
+    }
+}
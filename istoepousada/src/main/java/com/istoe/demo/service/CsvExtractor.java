@@ -0,0 +1,97 @@
+package com.istoe.demo.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Escreve um ResultSet como CSV à medida que as linhas chegam do cursor, sem acumulá-las.
+ * O cabeçalho vem dos rótulos das colunas da consulta e é enviado antes da primeira linha.
+ * Usa ';' como separador e ',' como separador decimal, que é o que o Excel em português espera.
+ * Textos que começam com {@code = + - @} recebem um apóstrofo na frente, para que a planilha não
+ * os execute como fórmula.
+ */
+final class CsvExtractor implements ResultSetExtractor<Long> {
+
+    private static final char SEPARADOR = ';';
+
+    private final Writer saida;
+
+    CsvExtractor(Writer saida) {
+        this.saida = saida;
+    }
+
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        try {
+            ResultSetMetaData meta = rs.getMetaData();
+            int colunas = meta.getColumnCount();
+
+            for (int c = 1; c <= colunas; c++) {
+                if (c > 1) saida.write(SEPARADOR);
+                escrever(meta.getColumnLabel(c));
+            }
+            saida.write("\r\n");
+            // o primeiro lote já chegou com a consulta; o flush só evita segurar o cabeçalho no buffer
+            saida.flush();
+
+            long linhas = 0;
+            while (rs.next()) {
+                for (int c = 1; c <= colunas; c++) {
+                    if (c > 1) saida.write(SEPARADOR);
+                    Object valor = rs.getObject(c);
+                    if (valor != null) escrever(texto(valor));
+                }
+                saida.write("\r\n");
+                linhas++;
+            }
+            saida.flush();
+            return linhas;
+        } catch (IOException e) {
+            // cliente desconectou: a exceção interrompe a leitura e libera o cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String texto(Object valor) {
+        if (valor instanceof Timestamp ts) return ts.toLocalDateTime().toString();
+        if (valor instanceof Date data) return data.toLocalDate().toString();
+        if (valor instanceof BigDecimal decimal) return decimal(decimal);
+        if ((valor instanceof Double || valor instanceof Float) && Double.isFinite(((Number) valor).doubleValue())) {
+            return decimal(new BigDecimal(valor.toString()));
+        }
+        if (valor instanceof String str) return semFormula(str);
+        return valor.toString();
+    }
+
+    /** Sem notação científica e com vírgula decimal: 1.0E7 vira 10000000 e 12.5 vira 12,5. */
+    private static String decimal(BigDecimal valor) {
+        return valor.toPlainString().replace('.', ',');
+    }
+
+    private static String semFormula(String valor) {
+        if (valor.isEmpty()) return valor;
+        char primeiro = valor.charAt(0);
+        return primeiro == '=' || primeiro == '+' || primeiro == '-' || primeiro == '@' ? "'" + valor : valor;
+    }
+
+    private void escrever(String valor) throws IOException {
+        boolean aspas = valor.indexOf(SEPARADOR) >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        if (!aspas) {
+            saida.write(valor);
+            return;
+        }
+        saida.write('"');
+        saida.write(valor.replace("\"", "\"\""));
+        saida.write('"');
+    }
+}
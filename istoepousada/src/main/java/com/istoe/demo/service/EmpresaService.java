@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -33,6 +34,14 @@ public class EmpresaService {
         return empresaRepository.findByNomeOrCnpj(termo);
     }
 
+    /**
+     * Empresas só com os campos pedidos em {@code fields}, opcionalmente filtradas por nome ou CNPJ.
+     */
+    public List<Map<String, Object>> listarCampos(String fields, String termo) {
+        List<String> campos = EmpresaRepository.CAMPOS.parse(fields);
+        return empresaRepository.findCampos(campos, termo != null && !termo.isBlank() ? termo.trim() : null);
+    }
+
     public List<Empresa> listarTodas() {
         return empresaRepository.findAll();
     }
@@ -0,0 +1,74 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.repository.PernoiteRepository;
+import com.istoe.demo.repository.RelatorioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.Function;
+
+/**
+ * Exportações em CSV escritas direto na resposta: a consulta roda com cursor dentro de uma
+ * transação somente-leitura e cada lote de linhas é gravado antes do próximo ser buscado,
+ * então o consumo de memória não depende do tamanho da exportação.
+ */
+@Service
+public class ExportacaoService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacaoService.class);
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+    /** BOM para o Excel reconhecer o arquivo como UTF-8. */
+    private static final char BOM = '\uFEFF';
+
+    private final RelatorioRepository relatorioRepository;
+    private final PernoiteRepository pernoiteRepository;
+    private final TransactionTemplate leituraTemplate;
+
+    public ExportacaoService(RelatorioRepository relatorioRepository,
+                             PernoiteRepository pernoiteRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.relatorioRepository = relatorioRepository;
+        this.pernoiteRepository = pernoiteRepository;
+        this.leituraTemplate = new TransactionTemplate(transactionManager);
+        this.leituraTemplate.setReadOnly(true);
+    }
+
+    public StreamingResponseBody exportarRelatorio(LocalDate dataInicio, LocalDate dataFim) {
+        validarPeriodo(dataInicio, dataFim);
+        return exportar("relatorio", extrator -> relatorioRepository.exportar(dataInicio, dataFim, extrator));
+    }
+
+    public StreamingResponseBody exportarPernoites(LocalDate dataInicio, LocalDate dataFim) {
+        validarPeriodo(dataInicio, dataFim);
+        return exportar("pernoites", extrator -> pernoiteRepository.exportarHistorico(dataInicio, dataFim, extrator));
+    }
+
+    private StreamingResponseBody exportar(String nome, Function<ResultSetExtractor<Long>, Long> consulta) {
+        return saida -> {
+            long inicio = System.nanoTime();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER);
+            writer.write(BOM);
+            // a resposta começa antes de a consulta rodar
+            writer.flush();
+            Long linhas = leituraTemplate.execute(status -> consulta.apply(new CsvExtractor(writer)));
+            writer.flush();
+            log.info("Exportação {}: {} linha(s) em {} ms", nome, linhas, (System.nanoTime() - inicio) / 1_000_000);
+        };
+    }
+
+    private static void validarPeriodo(LocalDate dataInicio, LocalDate dataFim) {
+        if (dataInicio != null && dataFim != null && dataFim.isBefore(dataInicio))
+            throw new IllegalArgumentException("A data final não pode ser anterior à inicial.");
+    }
+}
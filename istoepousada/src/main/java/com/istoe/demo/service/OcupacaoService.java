@@ -0,0 +1,167 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.event.PernoiteAlteradoEvent;
+import com.istoe.demo.event.QuartoAlteradoEvent;
+import com.istoe.demo.repository.QuartosRepository;
+import com.istoe.demo.repository.QuartosRepository.PeriodoOcupado;
+import com.istoe.demo.repository.QuartosRepository.QuartoCapacidade;
+import com.istoe.demo.response.DisponibilidadeResponse;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Índice em memória das noites ocupadas de cada quarto, em uma janela móvel de
+ * {@link #DIAS_PASSADOS} dias atrás até {@link #DIAS_FUTUROS} dias à frente.
+ * Cada quarto tem um {@link BitSet} em que o bit {@code i} representa a noite
+ * {@code inicioHorizonte + i}. Os bitsets nunca são alterados depois de publicados:
+ * cada atualização grava uma cópia nova, de modo que as leituras dispensam sincronização.
+ */
+@Service
+public class OcupacaoService {
+
+    private static final int DIAS_PASSADOS = 7;
+    private static final int DIAS_FUTUROS = 400;
+
+    private final QuartosRepository quartosRepository;
+
+    private volatile Indice indice;
+
+    public OcupacaoService(QuartosRepository quartosRepository) {
+        this.quartosRepository = quartosRepository;
+    }
+
+    private record Indice(
+            LocalDate inicio,
+            LocalDate fim,
+            Map<Long, QuartoCapacidade> quartos,
+            Map<Long, BitSet> noitesOcupadas
+    ) {
+        int posicao(LocalDate data) {
+            return (int) ChronoUnit.DAYS.between(inicio, data);
+        }
+
+        boolean cobre(LocalDate de, LocalDate ate) {
+            return !de.isBefore(inicio) && !ate.isAfter(fim);
+        }
+    }
+
+    public List<DisponibilidadeResponse> listarDisponiveis(LocalDate inicio, LocalDate fim, Integer pessoas) {
+        if (inicio == null || fim == null)
+            throw new IllegalArgumentException("As datas de início e fim são obrigatórias.");
+        if (!fim.isAfter(inicio))
+            throw new IllegalArgumentException("A data final deve ser posterior à inicial.");
+
+        int qtdPessoas = pessoas != null ? pessoas : 1;
+        Indice atual = indiceAtual();
+
+        if (!atual.cobre(inicio, fim)) {
+            return quartosRepository.listarDisponiveis(inicio, fim, qtdPessoas).stream()
+                    .map(OcupacaoService::toResponse)
+                    .toList();
+        }
+
+        int de = atual.posicao(inicio);
+        int ate = atual.posicao(fim);
+
+        List<DisponibilidadeResponse> disponiveis = new ArrayList<>();
+        for (QuartoCapacidade quarto : atual.quartos().values()) {
+            int capacidade = quarto.capacidade() != null ? quarto.capacidade() : 0;
+            if (capacidade < qtdPessoas) continue;
+
+            BitSet noites = atual.noitesOcupadas().get(quarto.id());
+            int primeiraOcupada = noites != null ? noites.nextSetBit(de) : -1;
+            if (primeiraOcupada < 0 || primeiraOcupada >= ate) {
+                disponiveis.add(toResponse(quarto));
+            }
+        }
+        return disponiveis;
+    }
+
+    /**
+     * Reconstrói o índice inteiro. Roda na inicialização e logo após a meia-noite, para deslocar a janela.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 5 0 * * *")
+    public synchronized void reconstruir() {
+        LocalDate inicio = LocalDate.now().minusDays(DIAS_PASSADOS);
+        LocalDate fim = LocalDate.now().plusDays(DIAS_FUTUROS);
+
+        Indice novo = new Indice(inicio, fim, new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>());
+
+        for (QuartoCapacidade q : quartosRepository.listarQuartosComCapacidade(null)) {
+            novo.quartos().put(q.id(), q);
+        }
+        for (PeriodoOcupado periodo : quartosRepository.listarPeriodosOcupados(inicio, fim, null)) {
+            marcar(novo, novo.noitesOcupadas().computeIfAbsent(periodo.quartoId(), id -> new BitSet()), periodo);
+        }
+
+        this.indice = novo;
+    }
+
+    @TransactionalEventListener
+    public void onPernoiteAlterado(PernoiteAlteradoEvent event) {
+        if (event.quartoId() != null) recarregarQuarto(event.quartoId());
+    }
+
+    @EventListener
+    public void onQuartoAlterado(QuartoAlteradoEvent event) {
+        recarregarQuarto(event.quartoId());
+    }
+
+    /**
+     * Relê do banco os dados e as noites ocupadas de um único quarto e publica o novo bitset.
+     */
+    public synchronized void recarregarQuarto(Long quartoId) {
+        Indice atual = this.indice;
+        if (atual == null) {
+            reconstruir();
+            return;
+        }
+
+        List<QuartoCapacidade> quarto = quartosRepository.listarQuartosComCapacidade(quartoId);
+        if (quarto.isEmpty()) {
+            atual.quartos().remove(quartoId);
+            atual.noitesOcupadas().remove(quartoId);
+            return;
+        }
+
+        BitSet noites = new BitSet();
+        for (PeriodoOcupado periodo : quartosRepository.listarPeriodosOcupados(atual.inicio(), atual.fim(), List.of(quartoId))) {
+            marcar(atual, noites, periodo);
+        }
+
+        atual.quartos().put(quartoId, quarto.get(0));
+        atual.noitesOcupadas().put(quartoId, noites);
+    }
+
+    private Indice indiceAtual() {
+        Indice atual = this.indice;
+        if (atual == null) {
+            reconstruir();
+            atual = this.indice;
+        }
+        return atual;
+    }
+
+    private static void marcar(Indice indice, BitSet noites, PeriodoOcupado periodo) {
+        int de = Math.max(0, indice.posicao(periodo.inicio()));
+        int ate = Math.min(indice.posicao(indice.fim()), indice.posicao(periodo.fim()));
+        if (ate > de) noites.set(de, ate);
+    }
+
+    private static DisponibilidadeResponse toResponse(QuartoCapacidade quarto) {
+        return new DisponibilidadeResponse(quarto.id(), quarto.descricao(), quarto.categoria(), quarto.capacidade());
+    }
+}
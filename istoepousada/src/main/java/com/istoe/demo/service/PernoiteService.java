@@ -1,27 +1,159 @@
 package com.istoe.demo.service;
 
 import com.istoe.demo.enums.StatusPernoiteEnum;
+import com.istoe.demo.event.PernoiteAlteradoEvent;
 import com.istoe.demo.repository.PernoiteRepository;
+import com.istoe.demo.repository.QuartosRepository;
 import com.istoe.demo.request.CreatePernoiteRequest;
 import com.istoe.demo.request.HospedeRequest;
 import com.istoe.demo.request.PagamentoRequest;
+import com.istoe.demo.response.LotePernoiteResponse;
+import com.istoe.demo.response.PaginaResponse;
+import com.istoe.demo.response.PernoiteResumoResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 public class PernoiteService {
 
+    private static final int LIMITE_PADRAO_LISTAGEM = 100;
+    private static final int LIMITE_MAXIMO_LISTAGEM = 500;
+    private static final int MAX_TENTATIVAS = 3;
+
+    /** A partir de quantas noites o pernoite é gravado como longa permanência (diárias materializadas aos poucos). */
+    private static final long NOITES_LONGA_PERMANENCIA = 30;
+
+    private static final Logger log = LoggerFactory.getLogger(PernoiteService.class);
+
     private final PernoiteRepository pernoiteRepository;
+    private final QuartosRepository quartosRepository;
+    private final TarifaService tarifaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
-    public PernoiteService(PernoiteRepository pernoiteRepository) {
+    public PernoiteService(PernoiteRepository pernoiteRepository,
+                           QuartosRepository quartosRepository,
+                           TarifaService tarifaService,
+                           ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager) {
         this.pernoiteRepository = pernoiteRepository;
+        this.quartosRepository = quartosRepository;
+        this.tarifaService = tarifaService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
     public Long criarPernoite(CreatePernoiteRequest request) {
+        validarCheckIn(request);
+
+        int qtdPessoas = request.hospedes() != null ? request.hospedes().size() : 0;
+        double valorDiaria = tarifaService.valorDiaria(request.quarto(), qtdPessoas);
+
+        return executarComRetentativa(() -> {
+            pernoiteRepository.bloquearQuarto(request.quarto());
+
+            if (pernoiteRepository.existeDiariaNoPeriodo(request.quarto(), request.dataEntrada(), request.dataSaida(), null))
+                throw new IllegalStateException("O quarto informado já está ocupado no período.");
+
+            long noites = ChronoUnit.DAYS.between(request.dataEntrada(), request.dataSaida());
+            Long pernoiteId = noites >= NOITES_LONGA_PERMANENCIA
+                    ? pernoiteRepository.adicionarPernoiteLongaPermanencia(request, valorDiaria)
+                    : pernoiteRepository.adicionarPernoite(request, valorDiaria);
+            eventPublisher.publishEvent(new PernoiteAlteradoEvent(
+                    PernoiteAlteradoEvent.Tipo.CHECK_IN, pernoiteId, request.quarto()));
+            return pernoiteId;
+        });
+    }
+
+    /**
+     * Check-in de grupo: valida todas as requisições antes de gravar qualquer coisa e persiste
+     * o grupo inteiro em uma única transação. Se alguma requisição for inválida ou conflitar com
+     * outra (do grupo ou já gravada), nada é gravado e o erro é informado no item correspondente.
+     */
+    public LotePernoiteResponse criarPernoitesEmLote(List<CreatePernoiteRequest> requests) {
+        if (requests == null || requests.isEmpty())
+            throw new IllegalArgumentException("Informe ao menos um pernoite.");
+
+        String[] erros = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                validarCheckIn(requests.get(i));
+            } catch (IllegalArgumentException e) {
+                erros[i] = e.getMessage();
+            }
+        }
+
+        // conflitos dentro do próprio grupo
+        for (int i = 0; i < requests.size(); i++) {
+            for (int j = 0; j < i && erros[i] == null; j++) {
+                if (erros[j] == null && sobrepoe(requests.get(i), requests.get(j))) {
+                    erros[i] = "Conflita com o item " + j + " do lote (mesmo quarto e período).";
+                }
+            }
+        }
+
+        if (temErro(erros)) return resultadoLote(requests, null, erros);
+
+        double[] valores = new double[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            CreatePernoiteRequest r = requests.get(i);
+            valores[i] = tarifaService.valorDiaria(r.quarto(), r.hospedes() != null ? r.hospedes().size() : 0);
+        }
+
+        Set<Long> quartos = new HashSet<>();
+        LocalDate inicio = null;
+        LocalDate fim = null;
+        for (CreatePernoiteRequest r : requests) {
+            quartos.add(r.quarto());
+            if (inicio == null || r.dataEntrada().isBefore(inicio)) inicio = r.dataEntrada();
+            if (fim == null || r.dataSaida().isAfter(fim)) fim = r.dataSaida();
+        }
+        LocalDate inicioLote = inicio;
+        LocalDate fimLote = fim;
+
+        return executarComRetentativa(() -> {
+            pernoiteRepository.bloquearQuartos(quartos);
+
+            String[] conflitos = new String[requests.size()];
+            for (var periodo : quartosRepository.listarPeriodosOcupados(inicioLote, fimLote, quartos)) {
+                for (int i = 0; i < requests.size(); i++) {
+                    CreatePernoiteRequest r = requests.get(i);
+                    if (r.quarto().equals(periodo.quartoId())
+                            && periodo.inicio().isBefore(r.dataSaida())
+                            && periodo.fim().isAfter(r.dataEntrada())) {
+                        conflitos[i] = "O quarto informado já está ocupado no período.";
+                    }
+                }
+            }
+            if (temErro(conflitos)) return resultadoLote(requests, null, conflitos);
+
+            List<Long> ids = pernoiteRepository.adicionarPernoitesEmLote(requests, valores);
+            for (int i = 0; i < ids.size(); i++) {
+                eventPublisher.publishEvent(new PernoiteAlteradoEvent(
+                        PernoiteAlteradoEvent.Tipo.CHECK_IN, ids.get(i), requests.get(i).quarto()));
+            }
+            return resultadoLote(requests, ids, conflitos);
+        });
+    }
+
+    private void validarCheckIn(CreatePernoiteRequest request) {
+        if (request == null)
+            throw new IllegalArgumentException("Requisição vazia.");
+
         if (!Objects.equals(request.dataEntrada(), LocalDate.now())) {
             throw new IllegalArgumentException("Data de entrada não pode ser diferente de hoje");
         }
@@ -35,10 +167,35 @@ public class PernoiteService {
         if (request.dataSaida().isBefore(request.dataEntrada()))
             throw new IllegalArgumentException("A data de saída não pode ser anterior à data de entrada.");
 
-        return pernoiteRepository.adicionarPernoite(request);
+        if (request.hospedes() != null
+                && request.hospedes().stream().filter(HospedeRequest::representante).count() > 1)
+            throw new IllegalArgumentException("Apenas um hóspede pode ser o representante do pernoite.");
+    }
+
+    private static boolean sobrepoe(CreatePernoiteRequest a, CreatePernoiteRequest b) {
+        return a.quarto().equals(b.quarto())
+                && a.dataEntrada().isBefore(b.dataSaida())
+                && b.dataEntrada().isBefore(a.dataSaida());
+    }
+
+    private static boolean temErro(String[] erros) {
+        return Arrays.stream(erros).anyMatch(Objects::nonNull);
+    }
+
+    private static LotePernoiteResponse resultadoLote(List<CreatePernoiteRequest> requests, List<Long> ids, String[] erros) {
+        List<LotePernoiteResponse.Item> itens = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            CreatePernoiteRequest r = requests.get(i);
+            itens.add(new LotePernoiteResponse.Item(
+                    i,
+                    r != null ? r.quarto() : null,
+                    ids != null ? ids.get(i) : null,
+                    erros[i]
+            ));
+        }
+        return new LotePernoiteResponse(ids != null, itens);
     }
 
-    @Transactional
     public void adicionarDiarias(Long pernoiteId, LocalDate novaDataInicio, LocalDate novaDataFim,
                                  Long quartoId, List<HospedeRequest> hospedes, List<PagamentoRequest> pagamentos) {
 
@@ -57,14 +214,66 @@ public class PernoiteService {
         if (totalRepresentantes > 1)
             throw new IllegalArgumentException("Apenas um hóspede pode ser o representante do pernoite.");
 
-        pernoiteRepository.adicionarDiariasAoPernoite(
-                pernoiteId,
-                novaDataInicio,
-                novaDataFim,
-                quartoId,
-                hospedes,
-                pagamentos
-        );
+        int qtdPessoas = hospedes != null ? hospedes.size() : 1;
+        double valorDiaria = tarifaService.valorDiaria(quartoId, qtdPessoas);
+
+        executarComRetentativa(() -> {
+            pernoiteRepository.bloquearQuarto(quartoId);
+
+            if (pernoiteRepository.existeDiariaNoPeriodo(quartoId, novaDataInicio, novaDataFim, pernoiteId))
+                throw new IllegalStateException("O quarto informado já está ocupado por outro pernoite no período.");
+
+            if (pernoiteRepository.isLongaPermanencia(pernoiteId)) {
+                pernoiteRepository.prorrogarLongaPermanencia(
+                        pernoiteId,
+                        novaDataInicio,
+                        novaDataFim,
+                        quartoId,
+                        hospedes,
+                        pagamentos,
+                        valorDiaria
+                );
+            } else {
+                pernoiteRepository.adicionarDiariasAoPernoite(
+                        pernoiteId,
+                        novaDataInicio,
+                        novaDataFim,
+                        quartoId,
+                        hospedes,
+                        pagamentos,
+                        valorDiaria
+                );
+            }
+            eventPublisher.publishEvent(new PernoiteAlteradoEvent(
+                    PernoiteAlteradoEvent.Tipo.PRORROGACAO, pernoiteId, quartoId));
+            return null;
+        });
+    }
+
+    /**
+     * Materializa, logo após a meia-noite, a diária de hoje de cada longa permanência ativa.
+     */
+    @Scheduled(cron = "0 10 0 * * *")
+    public void materializarDiariasLongaPermanencia() {
+        int criadas = pernoiteRepository.materializarDiarias(null, LocalDate.now().plusDays(1));
+        log.info("Diárias de longa permanência materializadas: {}", criadas);
+    }
+
+    /**
+     * Executa a operação em uma transação própria, repetindo-a quando o banco acusa conflito
+     * (diária duplicada no mesmo quarto/data, deadlock ou falha de serialização). Na nova
+     * tentativa a verificação de ocupação enxerga o registro concorrente e falha com uma mensagem clara.
+     */
+    private <T> T executarComRetentativa(Supplier<T> operacao) {
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                return transactionTemplate.execute(status -> operacao.get());
+            } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+                if (tentativa >= MAX_TENTATIVAS) {
+                    throw new IllegalStateException("Não foi possível concluir a operação: o quarto foi alterado por outro usuário.", e);
+                }
+            }
+        }
     }
 
 
@@ -73,12 +282,49 @@ public class PernoiteService {
         if (pernoiteId == null)
             throw new IllegalArgumentException("O ID do pernoite é obrigatório para cancelamento.");
 
-        pernoiteRepository.cancelarPernoite(pernoiteId, motivo);
+        Long quartoId = pernoiteRepository.cancelarPernoite(pernoiteId, motivo);
+        eventPublisher.publishEvent(new PernoiteAlteradoEvent(
+                PernoiteAlteradoEvent.Tipo.CANCELAMENTO, pernoiteId, quartoId));
     }
 
+    /**
+     * Sem cursor nem limite devolve a lista completa; caso contrário, uma página ordenada por
+     * (data de entrada, id) decrescentes. O {@code cursor} recebido e o devolvido (só quando a
+     * página veio cheia) têm o mesmo formato "dataEntrada,id".
+     */
     @Transactional(readOnly = true)
-    public List<Map<String, Object>> listarPorStatus(StatusPernoiteEnum status) {
-        return pernoiteRepository.listarPorStatus(status);
+    public PaginaResponse<PernoiteResumoResponse> listarPorStatus(StatusPernoiteEnum status,
+                                                                  String cursor,
+                                                                  Integer limite) {
+        LocalDate cursorDataEntrada = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int separador = cursor.lastIndexOf(',');
+            if (separador < 0) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            try {
+                cursorDataEntrada = LocalDate.parse(cursor.substring(0, separador).trim());
+                cursorId = Long.parseLong(cursor.substring(separador + 1).trim());
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        boolean paginado = limite != null || cursorId != null;
+        if (!paginado) {
+            return new PaginaResponse<>(pernoiteRepository.listarPorStatus(status, null, null, null), null);
+        }
+
+        int tamanhoPagina = limite == null || limite <= 0
+                ? LIMITE_PADRAO_LISTAGEM
+                : Math.min(limite, LIMITE_MAXIMO_LISTAGEM);
+
+        List<PernoiteResumoResponse> lista =
+                pernoiteRepository.listarPorStatus(status, cursorDataEntrada, cursorId, tamanhoPagina);
+        if (lista.size() < tamanhoPagina) {
+            return new PaginaResponse<>(lista, null);
+        }
+        PernoiteResumoResponse ultimo = lista.get(lista.size() - 1);
+        return new PaginaResponse<>(lista, ultimo.dataEntradaCursor() + "," + ultimo.id());
     }
 
     public Map<String, Object> buscarDetalhesPernoitePorId(Long pernoiteId) {
@@ -1,20 +1,37 @@
 package com.istoe.demo.service;
 
 import com.istoe.demo.repository.PessoaRepository;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.Pessoa;
+import com.istoe.demo.response.PessoaResumoResponse;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class PessoaService {
 
+    private static final int LIMITE_PADRAO_BUSCA = 20;
+    private static final int LIMITE_MAXIMO_BUSCA = 100;
+    private static final int LIMITE_MAXIMO_PAGINA = 500;
+    private static final long TIMEOUT_STREAM_MS = 10 * 60 * 1000L;
+
     private final PessoaRepository pessoaRepository;
+    private final TransactionTemplate leituraTemplate;
 
-    public PessoaService(PessoaRepository pessoaRepository) {
+    public PessoaService(PessoaRepository pessoaRepository, PlatformTransactionManager transactionManager) {
         this.pessoaRepository = pessoaRepository;
+        this.leituraTemplate = new TransactionTemplate(transactionManager);
+        this.leituraTemplate.setReadOnly(true);
     }
 
     public Optional<Pessoa> buscarPorId(Long id) {
@@ -33,6 +50,52 @@ public class PessoaService {
         return pessoaRepository.findByNomeOrCpf(termo);
     }
 
+    public PaginaResponse<Pessoa> buscar(String termo, String cursor, Integer limite) {
+        if (termo == null || termo.isBlank()) {
+            return new PaginaResponse<>(List.of(), null);
+        }
+        int limiteEfetivo = limite == null || limite <= 0 ? LIMITE_PADRAO_BUSCA : Math.min(limite, LIMITE_MAXIMO_BUSCA);
+        return pessoaRepository.buscarRanqueado(termo.trim(), cursor, limiteEfetivo);
+    }
+
+    /**
+     * Resumos para os seletores de hóspede: com {@code termo}, na ordem da busca ranqueada;
+     * sem termo, em ordem de nome.
+     */
+    public PaginaResponse<PessoaResumoResponse> listarResumos(String termo, String cursor, Integer limite) {
+        int limiteEfetivo = limite == null || limite <= 0 ? LIMITE_PADRAO_BUSCA : Math.min(limite, LIMITE_MAXIMO_PAGINA);
+
+        if (termo != null && !termo.isBlank()) {
+            PessoaRepository.Ranqueamento ranqueamento = pessoaRepository.ranquear(termo.trim(), cursor, limiteEfetivo);
+            return new PaginaResponse<>(pessoaRepository.findResumosPorIds(ranqueamento.ids()),
+                    ranqueamento.proximoCursor());
+        }
+
+        return pessoaRepository.findResumosPagina(cursor, limiteEfetivo);
+    }
+
+    /**
+     * Listagem só com os campos pedidos em {@code fields}; pagina quando há cursor ou limite.
+     */
+    public PaginaResponse<Map<String, Object>> listarCampos(String fields, boolean somenteHospedados,
+                                                            String cursor, Integer limite) {
+        List<String> campos = PessoaRepository.CAMPOS.parse(fields);
+        Integer tamanhoPagina = cursor == null && limite == null ? null
+                : limite == null || limite <= 0 ? LIMITE_PADRAO_BUSCA : Math.min(limite, LIMITE_MAXIMO_PAGINA);
+        return pessoaRepository.findCampos(campos, somenteHospedados, cursor, tamanhoPagina);
+    }
+
+    public PaginaResponse<Map<String, Object>> buscarCampos(String fields, String termo, String cursor, Integer limite) {
+        List<String> campos = PessoaRepository.CAMPOS.parse(fields);
+        if (termo == null || termo.isBlank()) {
+            return new PaginaResponse<>(List.of(), null);
+        }
+        int limiteEfetivo = limite == null || limite <= 0 ? LIMITE_PADRAO_BUSCA : Math.min(limite, LIMITE_MAXIMO_BUSCA);
+        PessoaRepository.Ranqueamento ranqueamento = pessoaRepository.ranquear(termo.trim(), cursor, limiteEfetivo);
+        return new PaginaResponse<>(pessoaRepository.findCamposPorIds(ranqueamento.ids(), campos),
+                ranqueamento.proximoCursor());
+    }
+
     public List<Pessoa> listarTodos() {
         return pessoaRepository.findAll();
     }
@@ -41,6 +104,39 @@ public class PessoaService {
         return pessoaRepository.findHospedados();
     }
 
+    public PaginaResponse<Pessoa> listarPagina(boolean somenteHospedados, String cursor, Integer limite) {
+        int tamanhoPagina = limite == null || limite <= 0 ? LIMITE_PADRAO_BUSCA : Math.min(limite, LIMITE_MAXIMO_PAGINA);
+        return pessoaRepository.findPagina(somenteHospedados, cursor, tamanhoPagina);
+    }
+
+    /**
+     * Transmite as pessoas em NDJSON (um objeto JSON por linha) à medida que são lidas do banco.
+     * A leitura roda em uma thread virtual própria, dentro de uma transação somente leitura.
+     */
+    public ResponseBodyEmitter transmitir(boolean somenteHospedados) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(TIMEOUT_STREAM_MS);
+        Thread.ofVirtual().name("pessoas-ndjson").start(() -> {
+            try {
+                leituraTemplate.executeWithoutResult(status ->
+                        pessoaRepository.streamAll(somenteHospedados, pessoa -> enviar(emitter, pessoa)));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private static void enviar(ResponseBodyEmitter emitter, Pessoa pessoa) {
+        try {
+            emitter.send(pessoa, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException e) {
+            // cliente desconectou: a exceção interrompe a leitura e libera o cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Transactional
     public Pessoa cadastrar(Pessoa pessoa) {
         return pessoaRepository.save(pessoa);
@@ -0,0 +1,129 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.enums.RoomStatusEnum;
+import com.istoe.demo.event.PernoiteAlteradoEvent;
+import com.istoe.demo.event.QuartoAlteradoEvent;
+import com.istoe.demo.repository.QuartosRepository;
+import com.istoe.demo.repository.QuartosRepository.RoomWithCategoryInfo;
+import com.istoe.demo.response.QuartoDeltaResponse;
+import com.istoe.demo.response.RoomsResponse;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quadro de quartos do dia mantido em memória. O quadro completo é lido uma vez por dia;
+ * depois disso, cada evento de pernoite ou de quarto relê apenas a linha do quarto afetado.
+ * As respostas por filtro de status são montadas sob demanda e guardadas até a próxima alteração,
+ * e cada versão do quadro gera um ETag próprio.
+ */
+@Service
+public class QuadroQuartosService {
+
+    private static final String TODOS = "TODOS";
+
+    private static final Comparator<RoomWithCategoryInfo> ORDEM_QUADRO = Comparator
+            .comparing(RoomWithCategoryInfo::categoria, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(rwc -> rwc.room().id());
+
+    private final QuartosRepository quartosRepository;
+    private final QuartosStreamService quartosStreamService;
+
+    private volatile Quadro quadro;
+    private long ultimaVersao = System.currentTimeMillis();
+
+    public QuadroQuartosService(QuartosRepository quartosRepository, QuartosStreamService quartosStreamService) {
+        this.quartosRepository = quartosRepository;
+        this.quartosStreamService = quartosStreamService;
+    }
+
+    public record QuadroVersionado(RoomsResponse quadro, String etag) { }
+
+    private record Quadro(
+            LocalDate data,
+            long versao,
+            List<RoomWithCategoryInfo> linhas,
+            Map<String, QuadroVersionado> respostas
+    ) { }
+
+    /**
+     * Quadro de hoje, opcionalmente filtrado por status, com o ETag da versão atual.
+     */
+    public QuadroVersionado quadroDoDia(RoomStatusEnum status) {
+        Quadro atual = quadroAtual();
+        String chave = status != null ? status.name() : TODOS;
+        return atual.respostas().computeIfAbsent(chave, c -> new QuadroVersionado(
+                QuartosRepository.agruparPorCategoria(filtrar(atual.linhas(), status)),
+                "\"" + atual.versao() + "-" + c + "\""
+        ));
+    }
+
+    @TransactionalEventListener
+    public void onPernoiteAlterado(PernoiteAlteradoEvent event) {
+        if (event.quartoId() != null) recarregarQuarto(event.quartoId());
+    }
+
+    @EventListener
+    public void onQuartoAlterado(QuartoAlteradoEvent event) {
+        recarregarQuarto(event.quartoId());
+    }
+
+    /**
+     * Relê do banco apenas a linha de um quarto, avisa os inscritos do stream e publica uma nova versão do quadro.
+     */
+    public synchronized void recarregarQuarto(Long quartoId) {
+        LocalDate hoje = LocalDate.now();
+        List<RoomWithCategoryInfo> linhaNova = quartosRepository.listarQuadro(hoje, quartoId);
+        quartosStreamService.publicar(QuartoDeltaResponse.of(
+                quartoId, linhaNova.isEmpty() ? null : linhaNova.get(0).room()));
+
+        Quadro atual = this.quadro;
+        if (atual == null || !atual.data().equals(hoje)) return;
+
+        List<RoomWithCategoryInfo> linhas = new ArrayList<>(atual.linhas().size() + 1);
+        for (RoomWithCategoryInfo linha : atual.linhas()) {
+            if (!linha.room().id().equals(quartoId)) linhas.add(linha);
+        }
+        linhas.addAll(linhaNova);
+        linhas.sort(ORDEM_QUADRO);
+
+        this.quadro = new Quadro(atual.data(), proximaVersao(), List.copyOf(linhas), new ConcurrentHashMap<>());
+    }
+
+    private Quadro quadroAtual() {
+        Quadro atual = this.quadro;
+        if (atual != null && atual.data().equals(LocalDate.now())) return atual;
+        return reconstruir();
+    }
+
+    private synchronized Quadro reconstruir() {
+        LocalDate hoje = LocalDate.now();
+        Quadro atual = this.quadro;
+        if (atual != null && atual.data().equals(hoje)) return atual;
+
+        List<RoomWithCategoryInfo> linhas = new ArrayList<>(quartosRepository.listarQuadro(hoje, null));
+        linhas.sort(ORDEM_QUADRO);
+
+        Quadro novo = new Quadro(hoje, proximaVersao(), List.copyOf(linhas), new ConcurrentHashMap<>());
+        this.quadro = novo;
+        return novo;
+    }
+
+    private long proximaVersao() {
+        return ++ultimaVersao;
+    }
+
+    private static List<RoomWithCategoryInfo> filtrar(List<RoomWithCategoryInfo> linhas, RoomStatusEnum status) {
+        if (status == null) return linhas;
+        return linhas.stream()
+                .filter(rwc -> rwc.room().roomStatusEnum() == status)
+                .toList();
+    }
+}
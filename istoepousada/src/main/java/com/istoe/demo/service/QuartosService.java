@@ -1,25 +1,48 @@
 package com.istoe.demo.service;
 
 import com.istoe.demo.enums.RoomStatusEnum;
+import com.istoe.demo.event.QuartoAlteradoEvent;
 import com.istoe.demo.repository.QuartosRepository;
 import com.istoe.demo.request.CreateQuartoRequest;
 import com.istoe.demo.request.UpdateQuartoRequest;
+import com.istoe.demo.response.CalendarioQuartosResponse;
 import com.istoe.demo.response.CategoriaResponse;
+import com.istoe.demo.response.DisponibilidadeResponse;
 import com.istoe.demo.response.ObjetoResponse;
 import com.istoe.demo.response.RoomsResponse;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Service
 public class QuartosService {
 
+    private static final int MAX_DIAS_CALENDARIO = 93;
+
     private final QuartosRepository quartosRepository;
+    private final TarifaService tarifaService;
+    private final OcupacaoService ocupacaoService;
+    private final QuadroQuartosService quadroQuartosService;
+    private final QuartosStreamService quartosStreamService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public QuartosService(QuartosRepository quartosRepository) {
+    public QuartosService(QuartosRepository quartosRepository,
+                          TarifaService tarifaService,
+                          OcupacaoService ocupacaoService,
+                          QuadroQuartosService quadroQuartosService,
+                          QuartosStreamService quartosStreamService,
+                          ApplicationEventPublisher eventPublisher) {
         this.quartosRepository = quartosRepository;
+        this.tarifaService = tarifaService;
+        this.ocupacaoService = ocupacaoService;
+        this.quadroQuartosService = quadroQuartosService;
+        this.quartosStreamService = quartosStreamService;
+        this.eventPublisher = eventPublisher;
     }
 
     public RoomsResponse findRoomsByFilters(LocalDate date, RoomStatusEnum status, String searchTerm) {
@@ -28,6 +51,31 @@ public class QuartosService {
         return quartosRepository.findRoomsByFilters(searchDate, status, searchTerm);
     }
 
+    /**
+     * Quadro servido da memória quando a consulta é o quadro de hoje sem busca textual;
+     * {@code null} quando a consulta precisa ir ao banco.
+     */
+    public QuadroQuartosService.QuadroVersionado findRoomsBoard(LocalDate date, RoomStatusEnum status, String searchTerm) {
+        boolean hoje = date == null || date.equals(LocalDate.now());
+        boolean semBusca = searchTerm == null || searchTerm.trim().isEmpty();
+        return hoje && semBusca ? quadroQuartosService.quadroDoDia(status) : null;
+    }
+
+    public SseEmitter inscreverStream(String lastEventId) {
+        return quartosStreamService.inscrever(lastEventId);
+    }
+
+    public CalendarioQuartosResponse calendario(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null)
+            throw new IllegalArgumentException("As datas de início e fim são obrigatórias.");
+        if (fim.isBefore(inicio))
+            throw new IllegalArgumentException("A data final não pode ser anterior à inicial.");
+        if (ChronoUnit.DAYS.between(inicio, fim) >= MAX_DIAS_CALENDARIO)
+            throw new IllegalArgumentException("O calendário aceita no máximo " + MAX_DIAS_CALENDARIO + " dias.");
+
+        return quartosRepository.listarCalendario(inicio, fim);
+    }
+
     public RoomStatusEnum[] getAllRoomStatuses() {
         return RoomStatusEnum.values();
     }
@@ -40,7 +88,9 @@ public class QuartosService {
         validarReq(req.descricao(), req.quantidadePessoas(), req.statusCodigo(), req.categoriaId());
         // valida enum
         RoomStatusEnum.fromCodigo(req.statusCodigo()); // lança IllegalArgument se inválido
-        return quartosRepository.inserirQuarto(req);
+        Long id = quartosRepository.inserirQuarto(req);
+        eventPublisher.publishEvent(new QuartoAlteradoEvent(id));
+        return id;
     }
 
     public void atualizarQuarto(Long id, UpdateQuartoRequest req) {
@@ -49,6 +99,7 @@ public class QuartosService {
         RoomStatusEnum.fromCodigo(req.statusCodigo());
         int rows = quartosRepository.atualizarQuarto(id, req);
         Assert.isTrue(rows > 0, "Quarto não encontrado para atualização");
+        eventPublisher.publishEvent(new QuartoAlteradoEvent(id));
     }
 
     private void validarReq(String descricao, Integer quantidade, Integer statusCodigo, Long categoriaId) {
@@ -61,4 +112,12 @@ public class QuartosService {
     public List<ObjetoResponse> listarQuartosEnum() {
         return quartosRepository.listarQuartosEnum();
     }
-}
\ No newline at end of file
+
+    public List<DisponibilidadeResponse> listarDisponiveis(LocalDate inicio, LocalDate fim, Integer pessoas) {
+        return ocupacaoService.listarDisponiveis(inicio, fim, pessoas);
+    }
+
+    public void recarregarTarifas() {
+        tarifaService.recarregar();
+    }
+}
@@ -0,0 +1,170 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.response.QuartoDeltaResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Distribui por Server-Sent Events as alterações do quadro de quartos. Os inscritos ficam apenas
+ * registrados (nenhuma thread fica presa esperando); cada alteração recebe um id sequencial e as
+ * últimas {@link #TAMANHO_HISTORICO} ficam guardadas para que o cliente retome a partir do
+ * {@code Last-Event-ID}. Se o id pedido já saiu do histórico, o cliente recebe {@code recarregar}
+ * e deve buscar o quadro completo.
+ *
+ * <p>Cada inscrito tem uma fila limitada drenada por uma thread virtual própria: publicar e o
+ * heartbeat só enfileiram, então um cliente lento não segura os demais nem o agendador. Quem
+ * deixa a fila encher é desconectado e, ao reconectar, retoma pelo {@code Last-Event-ID}.
+ */
+@Service
+public class QuartosStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuartosStreamService.class);
+
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int TAMANHO_HISTORICO = 1000;
+    private static final int FOLGA_FILA = 100;
+    private static final String EVENTO_QUARTO = "quarto";
+    private static final String EVENTO_RECARREGAR = "recarregar";
+
+    private final List<Inscrito> inscritos = new CopyOnWriteArrayList<>();
+    private final Deque<Evento> historico = new ArrayDeque<>();
+    // Os ids partem do relógio para que um Last-Event-ID de antes de um reinício caia em "recarregar".
+    private long ultimoId = System.currentTimeMillis();
+
+    private record Evento(long id, QuartoDeltaResponse delta) { }
+
+    public SseEmitter inscrever(String lastEventId) {
+        Inscrito inscrito = new Inscrito(new SseEmitter(TIMEOUT_MS));
+        inscrito.emitter.onCompletion(() -> remover(inscrito));
+        inscrito.emitter.onTimeout(() -> remover(inscrito));
+        inscrito.emitter.onError(e -> remover(inscrito));
+
+        // Reenvio e registro sob o mesmo lock de publicar: nenhum evento se perde nem chega duplicado.
+        synchronized (this) {
+            reenviarDesde(inscrito, lastEventId);
+            inscritos.add(inscrito);
+        }
+        inscrito.iniciar();
+        return inscrito.emitter;
+    }
+
+    /**
+     * Registra o evento no histórico e o coloca na fila de cada inscrito. Sob o lock só há
+     * operações em memória, que não bloqueiam; o envio pela rede fica com a thread de cada inscrito.
+     */
+    public synchronized void publicar(QuartoDeltaResponse delta) {
+        Evento evento = new Evento(++ultimoId, delta);
+        historico.addLast(evento);
+        if (historico.size() > TAMANHO_HISTORICO) historico.removeFirst();
+
+        for (Inscrito inscrito : inscritos) {
+            enfileirarOuDescartar(inscrito, eventoQuarto(evento));
+        }
+    }
+
+    @Scheduled(fixedRate = 15_000)
+    public void heartbeat() {
+        for (Inscrito inscrito : inscritos) {
+            enfileirarOuDescartar(inscrito, SseEmitter.event().comment("ping"));
+        }
+    }
+
+    private void reenviarDesde(Inscrito inscrito, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) return;
+
+        long desde;
+        try {
+            desde = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            desde = Long.MIN_VALUE;
+        }
+
+        Evento maisAntigo = historico.peekFirst();
+        long primeiroDisponivel = maisAntigo != null ? maisAntigo.id() - 1 : ultimoId;
+        boolean perdido = desde < primeiroDisponivel || desde > ultimoId;
+        if (perdido) {
+            inscrito.fila.offer(SseEmitter.event()
+                    .id(Long.toString(ultimoId))
+                    .name(EVENTO_RECARREGAR)
+                    .data(ultimoId));
+            return;
+        }
+
+        // a fila comporta o histórico inteiro, então o reenvio nunca transborda
+        for (Evento evento : historico) {
+            if (evento.id() > desde) inscrito.fila.offer(eventoQuarto(evento));
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder eventoQuarto(Evento evento) {
+        return SseEmitter.event()
+                .id(Long.toString(evento.id()))
+                .name(EVENTO_QUARTO)
+                .data(evento.delta());
+    }
+
+    private void enfileirarOuDescartar(Inscrito inscrito, SseEmitter.SseEventBuilder evento) {
+        if (inscrito.fila.offer(evento)) return;
+
+        log.debug("Inscrito do stream de quartos descartado: fila cheia");
+        remover(inscrito);
+    }
+
+    private void remover(Inscrito inscrito) {
+        if (inscritos.remove(inscrito)) inscrito.encerrar();
+    }
+
+    /**
+     * Um cliente do stream: a fila de eventos pendentes e a thread virtual que a envia. Só essa
+     * thread escreve no emitter, inclusive para encerrá-lo.
+     */
+    private final class Inscrito {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> fila =
+                new ArrayBlockingQueue<>(TAMANHO_HISTORICO + FOLGA_FILA);
+        private volatile boolean encerrado;
+        private volatile Thread thread;
+
+        private Inscrito(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void iniciar() {
+            thread = Thread.ofVirtual().name("quartos-sse").start(this::drenar);
+            if (encerrado) thread.interrupt();
+        }
+
+        private void encerrar() {
+            encerrado = true;
+            Thread t = thread;
+            if (t != null) t.interrupt();
+        }
+
+        private void drenar() {
+            try {
+                while (!encerrado) {
+                    emitter.send(fila.take());
+                }
+                emitter.complete();
+            } catch (InterruptedException e) {
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Inscrito do stream de quartos desconectado: {}", e.getMessage());
+                inscritos.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -2,15 +2,33 @@ package com.istoe.demo.service;
 
 import com.istoe.demo.repository.RelatorioRepository;
 import com.istoe.demo.request.RelatorioRequest;
+import com.istoe.demo.response.FechamentoCaixaResponse;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.RelatorioResponse;
+import com.istoe.demo.response.ResumoCaixaResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Service
 public class RelatorioService {
 
+    private static final Logger log = LoggerFactory.getLogger(RelatorioService.class);
+
+    private static final int LIMITE_PADRAO_PAGINA = 100;
+    private static final int LIMITE_MAXIMO_PAGINA = 500;
+    private static final int MAX_DIAS_FECHAMENTO = 366;
+    private static final int DIAS_REGERACAO_NOTURNA = 7;
+
     private final RelatorioRepository relatorioRepository;
 
     public RelatorioService(RelatorioRepository relatorioRepository) {
@@ -36,7 +54,94 @@ public class RelatorioService {
     }
 
     public List<RelatorioResponse> findByFilters(LocalDate dataInicio, LocalDate dataFim, Long tipoPagamentoId, Long quartoId, Long pernoiteId) {
-        return relatorioRepository.findByFilters(dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId);
+        return relatorioRepository.findByFilters(dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId, null, null, null);
+    }
+
+    /**
+     * Página de lançamentos em ordem decrescente de (data_hora, id); o cursor da próxima página é
+     * "dataHora,id" do último lançamento, ou {@code null} quando não há mais lançamentos.
+     */
+    public PaginaResponse<RelatorioResponse> findPagina(LocalDate dataInicio, LocalDate dataFim, Long tipoPagamentoId,
+                                                        Long quartoId, Long pernoiteId, String cursor, Integer limite) {
+        LocalDateTime cursorDataHora = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int separador = cursor.lastIndexOf(',');
+            if (separador < 0) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            try {
+                cursorDataHora = LocalDateTime.parse(cursor.substring(0, separador).trim());
+                cursorId = Long.parseLong(cursor.substring(separador + 1).trim());
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        int tamanho = limite == null || limite <= 0 ? LIMITE_PADRAO_PAGINA : Math.min(limite, LIMITE_MAXIMO_PAGINA);
+        List<RelatorioResponse> itens = relatorioRepository.findByFilters(
+                dataInicio, dataFim, tipoPagamentoId, quartoId, pernoiteId, cursorDataHora, cursorId, tamanho);
+        if (itens.size() < tamanho) {
+            return new PaginaResponse<>(itens, null);
+        }
+        RelatorioResponse ultimo = itens.get(itens.size() - 1);
+        return new PaginaResponse<>(itens, ultimo.dataHora() + "," + ultimo.id());
+    }
+
+    public FechamentoCaixaResponse fechamentoCaixa(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null)
+            throw new IllegalArgumentException("As datas de início e fim são obrigatórias.");
+        if (fim.isBefore(inicio))
+            throw new IllegalArgumentException("A data final não pode ser anterior à inicial.");
+        if (ChronoUnit.DAYS.between(inicio, fim) >= MAX_DIAS_FECHAMENTO)
+            throw new IllegalArgumentException("O fechamento aceita no máximo " + MAX_DIAS_FECHAMENTO + " dias.");
+
+        return relatorioRepository.fechamentoCaixa(inicio, fim);
+    }
+
+    /**
+     * Totais do período a partir do resumo diário, sem varrer os lançamentos.
+     */
+    public ResumoCaixaResponse resumoCaixa(LocalDate inicio, LocalDate fim) {
+        if (inicio == null || fim == null)
+            throw new IllegalArgumentException("As datas de início e fim são obrigatórias.");
+        if (fim.isBefore(inicio))
+            throw new IllegalArgumentException("A data final não pode ser anterior à inicial.");
+
+        return relatorioRepository.resumoCaixa(inicio, fim);
+    }
+
+    /**
+     * Regera o resumo diário do período; sem datas, do primeiro lançamento até hoje.
+     * Devolve a quantidade de linhas de resumo gravadas.
+     */
+    public int reconstruirResumoDiario(LocalDate inicio, LocalDate fim) {
+        LocalDate de = inicio != null ? inicio : relatorioRepository.primeiroDiaLancamento();
+        LocalDate ate = fim != null ? fim : LocalDate.now();
+        if (de == null || ate.isBefore(de)) return 0;
+
+        long inicioExecucao = System.nanoTime();
+        int linhas = relatorioRepository.reconstruirResumoDiario(de, ate);
+        log.info("Resumo diário de {} a {} regerado: {} linha(s) em {} ms",
+                de, ate, linhas, (System.nanoTime() - inicioExecucao) / 1_000_000);
+        return linhas;
+    }
+
+    /**
+     * Na primeira subida com a tabela de resumo ainda vazia, gera o resumo de todo o histórico.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void popularResumoDiario() {
+        if (relatorioRepository.resumoDiarioVazio()) {
+            reconstruirResumoDiario(null, null);
+        }
+    }
+
+    /**
+     * Regeração noturna dos últimos dias, que corrige qualquer divergência dos deltas
+     * (por exemplo, lançamentos alterados direto no banco).
+     */
+    @Scheduled(cron = "${relatorio.resumo-diario.cron:0 30 0 * * *}")
+    public void reconstruirResumoRecente() {
+        reconstruirResumoDiario(LocalDate.now().minusDays(DIAS_REGERACAO_NOTURNA), LocalDate.now());
     }
 
     public void delete(Long id) {
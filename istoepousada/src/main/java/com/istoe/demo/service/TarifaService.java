@@ -0,0 +1,75 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.event.QuartoAlteradoEvent;
+import com.istoe.demo.repository.QuartosRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantém em memória a tabela de preços (preco_pessoa_categoria) e a categoria de cada quarto,
+ * para que a precificação de check-ins e prorrogações não precise consultar o banco.
+ * A tabela é imutável e substituída por inteiro a cada recarga.
+ */
+@Service
+public class TarifaService {
+
+    private final QuartosRepository quartosRepository;
+    private final AtomicReference<TabelaTarifa> tabela = new AtomicReference<>();
+
+    public TarifaService(QuartosRepository quartosRepository) {
+        this.quartosRepository = quartosRepository;
+    }
+
+    /**
+     * Valor da diária do quarto para a quantidade de pessoas informada, ou 0 se não houver preço cadastrado.
+     */
+    public double valorDiaria(Long quartoId, int qtdPessoas) {
+        TabelaTarifa atual = tabelaAtual();
+        Long categoriaId = atual.categoriaPorQuarto().get(quartoId);
+
+        // quarto criado fora da aplicação: recarrega uma vez antes de desistir
+        if (categoriaId == null) {
+            atual = recarregar();
+            categoriaId = atual.categoriaPorQuarto().getOrDefault(quartoId, 0L);
+        }
+
+        return atual.preco(categoriaId, qtdPessoas);
+    }
+
+    /**
+     * Relê quartos e preços do banco e publica a nova tabela de uma só vez.
+     */
+    public TabelaTarifa recarregar() {
+        TabelaTarifa nova = new TabelaTarifa(
+                Map.copyOf(quartosRepository.listarCategoriaPorQuarto()),
+                Map.copyOf(quartosRepository.listarPrecosPorCategoria())
+        );
+        tabela.set(nova);
+        return nova;
+    }
+
+    @EventListener
+    public void onQuartoAlterado(QuartoAlteradoEvent event) {
+        recarregar();
+    }
+
+    private TabelaTarifa tabelaAtual() {
+        TabelaTarifa atual = tabela.get();
+        return atual != null ? atual : recarregar();
+    }
+
+    public record TabelaTarifa(
+            Map<Long, Long> categoriaPorQuarto,
+            Map<Long, double[]> precosPorCategoria
+    ) {
+        public double preco(long categoriaId, int qtdPessoas) {
+            double[] precos = precosPorCategoria.get(categoriaId);
+            if (precos == null || qtdPessoas < 0 || qtdPessoas >= precos.length) return 0D;
+            double valor = precos[qtdPessoas];
+            return Double.isNaN(valor) ? 0D : valor;
+        }
+    }
+}
@@ -3,23 +3,30 @@ package com.istoe.demo.service;
 import com.istoe.demo.repository.EmpresaRepository;
 import com.istoe.demo.repository.PessoaRepository;
 import com.istoe.demo.response.Empresa;
+import com.istoe.demo.response.PaginaResponse;
 import com.istoe.demo.response.Pessoa;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class VinculoService {
 
     private final PessoaRepository pessoaRepository;
     private final EmpresaRepository empresaRepository;
+    private final PessoaService pessoaService;
 
     public VinculoService(PessoaRepository pessoaRepository,
-                          EmpresaRepository empresaRepository) {
+                          EmpresaRepository empresaRepository,
+                          PessoaService pessoaService) {
         this.pessoaRepository = pessoaRepository;
         this.empresaRepository = empresaRepository;
+        this.pessoaService = pessoaService;
     }
 
     public Optional<Pessoa> buscarPessoaComEmpresas(Long pessoaId) {
@@ -34,32 +41,66 @@ public class VinculoService {
         return pessoaRepository.findAll();
     }
 
+    public PaginaResponse<Pessoa> listarPessoasComEmpresasPagina(String cursor, Integer limite) {
+        return pessoaService.listarPagina(false, cursor, limite);
+    }
+
+    public ResponseBodyEmitter transmitirPessoasComEmpresas() {
+        return pessoaService.transmitir(false);
+    }
+
     public List<Empresa> listarTodasEmpresasComPessoas() {
         return empresaRepository.findAll();
     }
 
     @Transactional
     public void criarVinculo(Long empresaId, Long pessoaId) {
-        if (empresaRepository.findById(empresaId).isEmpty()) {
+        if (!empresaRepository.existsById(empresaId)) {
             throw new IllegalArgumentException("Empresa não encontrada com ID: " + empresaId);
         }
-        if (pessoaRepository.findById(pessoaId).isEmpty()) {
+        if (pessoaRepository.findIdsExistentes(List.of(pessoaId)).isEmpty()) {
             throw new IllegalArgumentException("Pessoa não encontrada com ID: " + pessoaId);
         }
         empresaRepository.vincularPessoas(empresaId, List.of(pessoaId));
     }
 
+    /**
+     * Vincula várias pessoas de uma vez. Os IDs são conferidos em uma única consulta e todos os
+     * ausentes são informados juntos, antes do insert em lote.
+     */
     @Transactional
     public void criarVinculos(Long empresaId, List<Long> pessoaIds) {
-        if (empresaRepository.findById(empresaId).isEmpty()) {
+        Set<Long> ids = validarIds(empresaId, pessoaIds);
+        empresaRepository.vincularPessoas(empresaId, List.copyOf(ids));
+    }
+
+    /**
+     * Substitui todas as pessoas vinculadas à empresa pelo conjunto informado, aplicando só a diferença.
+     */
+    @Transactional
+    public EmpresaRepository.VinculosSubstituidos substituirVinculos(Long empresaId, List<Long> pessoaIds) {
+        Set<Long> ids = validarIds(empresaId, pessoaIds);
+        return empresaRepository.substituirPessoas(empresaId, ids);
+    }
+
+    private Set<Long> validarIds(Long empresaId, List<Long> pessoaIds) {
+        if (!empresaRepository.existsById(empresaId)) {
             throw new IllegalArgumentException("Empresa não encontrada com ID: " + empresaId);
         }
-        for (Long pessoaId : pessoaIds) {
-            if (pessoaRepository.findById(pessoaId).isEmpty()) {
-                throw new IllegalArgumentException("Pessoa não encontrada com ID: " + pessoaId);
-            }
+        if (pessoaIds == null) {
+            throw new IllegalArgumentException("A lista de pessoas é obrigatória.");
+        }
+        if (pessoaIds.contains(null)) {
+            throw new IllegalArgumentException("A lista de pessoas contém ID nulo.");
+        }
+
+        Set<Long> ids = new LinkedHashSet<>(pessoaIds);
+        Set<Long> existentes = pessoaRepository.findIdsExistentes(ids);
+        List<Long> ausentes = ids.stream().filter(id -> !existentes.contains(id)).toList();
+        if (!ausentes.isEmpty()) {
+            throw new IllegalArgumentException("Pessoas não encontradas com IDs: " + ausentes);
         }
-        empresaRepository.vincularPessoas(empresaId, pessoaIds);
+        return ids;
     }
 
     @Transactional
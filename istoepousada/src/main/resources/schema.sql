@@ -0,0 +1,100 @@
+-- Ajustes de esquema aplicados na inicialização (spring.sql.init.mode=always).
+-- Todos os comandos precisam ser idempotentes.
+
+-- Listagem de pernoites paginada por (data_entrada, id)
+CREATE INDEX IF NOT EXISTS idx_pernoite_ativo_entrada
+    ON pernoite (data_entrada DESC, id DESC) WHERE ativo;
+
+CREATE INDEX IF NOT EXISTS idx_pernoite_ativo_status_entrada
+    ON pernoite (status_pernoite_enum, data_entrada DESC, id DESC) WHERE ativo;
+
+CREATE INDEX IF NOT EXISTS idx_diaria_pernoite_inicio
+    ON diaria (pernoite_id, data_inicio);
+
+-- Uma diária ativa por quarto e data: garante que dois check-ins simultâneos não ocupem a mesma noite.
+-- Diárias de pernoites cancelados ficam marcadas e deixam de contar.
+ALTER TABLE diaria ADD COLUMN IF NOT EXISTS cancelada BOOLEAN NOT NULL DEFAULT FALSE;
+
+UPDATE diaria d
+SET cancelada = TRUE
+FROM pernoite p
+WHERE p.id = d.pernoite_id
+  AND p.status_pernoite_enum = 3
+  AND NOT d.cancelada;
+
+-- Em bancos com noites duplicadas (gravadas antes do índice) a criação falha e a aplicação não sobe.
+-- Não há correção automática: scripts/diarias_duplicadas.sql lista os conflitos para que sejam
+-- resolvidos um a um (cancelando o pernoite errado) antes de subir esta versão.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_diaria_quarto_data_inicio
+    ON diaria (quarto_id, data_inicio) WHERE NOT cancelada;
+
+-- Longa permanência: o pernoite guarda a tarifa e os hóspedes; as diárias são criadas conforme as noites passam.
+ALTER TABLE pernoite ADD COLUMN IF NOT EXISTS longa_permanencia BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE pernoite ADD COLUMN IF NOT EXISTS valor_diaria DOUBLE PRECISION;
+
+CREATE TABLE IF NOT EXISTS pernoite_hospedes (
+    pernoite_id   BIGINT  NOT NULL REFERENCES pernoite (id),
+    hospedes_id   BIGINT  NOT NULL REFERENCES pessoa (id),
+    representante BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (pernoite_id, hospedes_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_pernoite_longa_permanencia
+    ON pernoite (quarto_id, data_entrada, data_saida) WHERE longa_permanencia AND ativo;
+
+-- Auditoria noturna: uma linha por etapa concluída em cada data de referência (permite retomar a execução).
+CREATE TABLE IF NOT EXISTS auditoria_noturna (
+    data_referencia DATE        NOT NULL,
+    etapa           VARCHAR(40) NOT NULL,
+    linhas          INTEGER     NOT NULL,
+    duracao_ms      BIGINT      NOT NULL,
+    executado_em    TIMESTAMP   NOT NULL DEFAULT now(),
+    PRIMARY KEY (data_referencia, etapa)
+);
+
+CREATE INDEX IF NOT EXISTS idx_pernoite_ativo_status_saida
+    ON pernoite (status_pernoite_enum, data_saida) WHERE ativo;
+
+-- Busca de hóspedes sem acento: unaccent não é IMMUTABLE, então os índices usam um wrapper.
+CREATE EXTENSION IF NOT EXISTS unaccent;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS 'SELECT public.unaccent(''public.unaccent''::regdictionary, $1)';
+
+CREATE INDEX IF NOT EXISTS idx_pessoa_nome_trgm
+    ON pessoa USING gin (lower(f_unaccent(nome)) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_pessoa_cpf_digitos
+    ON pessoa (regexp_replace(cpf, '[^0-9]', '', 'g') text_pattern_ops);
+
+-- Listagem paginada de pessoas por (nome, id).
+CREATE INDEX IF NOT EXISTS idx_pessoa_nome_id
+    ON pessoa (nome, id);
+
+CREATE INDEX IF NOT EXISTS idx_pessoa_hospedado_nome_id
+    ON pessoa (nome, id) WHERE hospedado;
+
+-- Relatório de caixa: filtros por período (intervalo semiaberto em data_hora) combinados
+-- com tipo de pagamento, quarto ou pernoite, paginados por (data_hora, id) decrescentes.
+CREATE INDEX IF NOT EXISTS idx_relatorio_data_hora
+    ON relatorio (data_hora, id);
+
+CREATE INDEX IF NOT EXISTS idx_relatorio_tipo_pagamento_data_hora
+    ON relatorio (fk_tipo_pagamento, data_hora, id);
+
+CREATE INDEX IF NOT EXISTS idx_relatorio_quarto_data_hora
+    ON relatorio (quarto_id, data_hora, id);
+
+CREATE INDEX IF NOT EXISTS idx_relatorio_pernoite
+    ON relatorio (pernoite_id, data_hora, id);
+
+-- Resumo diário do caixa, mantido por deltas em RelatorioRepository (tipo 0 = sem tipo de pagamento).
+CREATE TABLE IF NOT EXISTS relatorio_resumo_diario (
+    dia                 DATE             NOT NULL,
+    tipo_pagamento_id   BIGINT           NOT NULL,
+    valor               DOUBLE PRECISION NOT NULL DEFAULT 0,
+    lancamentos         BIGINT           NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, tipo_pagamento_id)
+);
@@ -0,0 +1,85 @@
+package com.istoe.demo;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Esquema temporário no banco configurado, para testes que precisam gravar de verdade (inclusive
+ * em transações concorrentes). As tabelas informadas são clonadas vazias no esquema, que vem
+ * antes de {@code public} no search_path da aplicação; as demais continuam sendo lidas de
+ * {@code public}. O esquema inteiro é descartado ao fim dos testes.
+ */
+public final class EsquemaDescartavel {
+
+    private final String nome;
+    private final String url;
+    private final String usuario;
+    private final String senha;
+
+    private EsquemaDescartavel(String nome, String url, String usuario, String senha) {
+        this.nome = nome;
+        this.url = url;
+        this.usuario = usuario;
+        this.senha = senha;
+    }
+
+    public static EsquemaDescartavel criar(String... tabelasClonadas) {
+        Properties propriedades = new Properties();
+        try (InputStream in = new ClassPathResource("application.properties").getInputStream()) {
+            propriedades.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        EsquemaDescartavel esquema = new EsquemaDescartavel(
+                "teste_" + UUID.randomUUID().toString().replace("-", ""),
+                propriedades.getProperty("spring.datasource.url"),
+                propriedades.getProperty("spring.datasource.username"),
+                propriedades.getProperty("spring.datasource.password"));
+
+        esquema.executar(st -> {
+            st.execute("CREATE SCHEMA " + esquema.nome);
+            for (String tabela : tabelasClonadas) {
+                st.execute("CREATE TABLE " + esquema.nome + "." + tabela
+                        + " (LIKE public." + tabela + " INCLUDING ALL)");
+            }
+        });
+        return esquema;
+    }
+
+    /**
+     * Aponta o datasource da aplicação para o esquema temporário (e, depois dele, para {@code public}).
+     */
+    public void registrar(DynamicPropertyRegistry registry) {
+        String separador = url.contains("?") ? "&" : "?";
+        registry.add("spring.datasource.url", () -> url + separador + "currentSchema=" + nome + ",public");
+    }
+
+    public void descartar() {
+        executar(st -> st.execute("DROP SCHEMA IF EXISTS " + nome + " CASCADE"));
+    }
+
+    private void executar(Comando comando) {
+        try (Connection con = DriverManager.getConnection(url, usuario, senha);
+             Statement st = con.createStatement()) {
+            comando.executar(st);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Falha ao preparar o esquema de teste " + nome, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Comando {
+        void executar(Statement st) throws SQLException;
+    }
+}
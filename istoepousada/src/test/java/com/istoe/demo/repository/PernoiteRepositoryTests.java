@@ -0,0 +1,81 @@
+package com.istoe.demo.repository;
+
+import com.istoe.demo.EsquemaDescartavel;
+import com.istoe.demo.request.CreatePernoiteRequest;
+import com.istoe.demo.request.PagamentoRequest;
+import com.istoe.demo.service.PernoiteService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+class PernoiteRepositoryTests {
+
+    private static final EsquemaDescartavel ESQUEMA = EsquemaDescartavel.criar(
+            "pernoite", "diaria", "diaria_hospedes", "diaria_pagamento", "consumo_diaria");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        ESQUEMA.registrar(registry);
+    }
+
+    @AfterAll
+    static void descartarEsquema() {
+        ESQUEMA.descartar();
+    }
+
+    @Autowired
+    private PernoiteRepository pernoiteRepository;
+
+    @Autowired
+    private PernoiteService pernoiteService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void detalhesDoPernoiteTrazemDiariasEPagamentos() {
+        List<Long> quartos = jdbcTemplate.queryForList("SELECT id FROM quarto ORDER BY id LIMIT 1", Long.class);
+        List<Long> tipos = jdbcTemplate.queryForList("SELECT id FROM tipo_pagamento ORDER BY id LIMIT 1", Long.class);
+        assumeTrue(!quartos.isEmpty() && !tipos.isEmpty(), "Banco sem quartos ou tipos de pagamento");
+
+        LocalDate entrada = LocalDate.now();
+        Long pernoiteId = pernoiteService.criarPernoite(new CreatePernoiteRequest(
+                entrada, entrada.plusDays(2), LocalTime.of(14, 0), LocalTime.of(12, 0),
+                quartos.get(0), List.of(),
+                List.of(new PagamentoRequest("Entrada", tipos.get(0).intValue(), 50f))));
+
+        Map<String, Object> detalhes = pernoiteRepository.buscarDetalhesPernoitePorId(pernoiteId);
+
+        List<Map<String, Object>> diarias = (List<Map<String, Object>>) detalhes.get("diarias");
+        assertEquals(2, diarias.size());
+
+        // cada pagamento é lançado uma única vez, na primeira noite
+        List<Map<String, Object>> pagamentos = diarias.stream()
+                .flatMap(d -> ((List<Map<String, Object>>) d.get("pagamentos")).stream())
+                .toList();
+        assertEquals(1, pagamentos.size());
+        Map<String, Object> primeiraDiaria = diarias.stream()
+                .filter(d -> ((Number) d.get("numero_diaria")).intValue() == 1)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(1, ((List<Map<String, Object>>) primeiraDiaria.get("pagamentos")).size());
+        assertEquals(50.0, ((Number) pagamentos.get(0).get("valor")).doubleValue(), 0.001);
+
+        Map<String, Object> resumo = (Map<String, Object>) detalhes.get("resumoFinanceiro");
+        assertEquals(50.0, ((Number) resumo.get("totalPago")).doubleValue(), 0.001);
+    }
+}
@@ -0,0 +1,184 @@
+package com.istoe.demo.service;
+
+import com.istoe.demo.EsquemaDescartavel;
+import com.istoe.demo.repository.PernoiteRepository;
+import com.istoe.demo.request.CreatePernoiteRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+class PernoiteConcorrenciaTests {
+
+    private static final int QUARTOS = 10;
+    private static final int CHECK_INS_POR_QUARTO = 30;
+
+    private static final EsquemaDescartavel ESQUEMA = EsquemaDescartavel.criar(
+            "pernoite", "diaria", "diaria_hospedes", "diaria_pagamento");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        ESQUEMA.registrar(registry);
+    }
+
+    @AfterAll
+    static void descartarEsquema() {
+        ESQUEMA.descartar();
+    }
+
+    @Autowired
+    private PernoiteService pernoiteService;
+
+    @Autowired
+    private PernoiteRepository pernoiteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void checkInsSimultaneosNaoOcupamAMesmaNoite() throws Exception {
+        LocalDate hoje = LocalDate.now();
+        LocalDate amanha = hoje.plusDays(1);
+
+        List<Long> quartos = jdbcTemplate.queryForList("""
+                SELECT q.id FROM quarto q
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM diaria d
+                    WHERE d.quarto_id = q.id AND NOT d.cancelada AND d.data_inicio = ?
+                )
+                ORDER BY q.id
+                LIMIT ?
+                """, Long.class, hoje, QUARTOS);
+        assumeFalse(quartos.isEmpty(), "Nenhum quarto livre hoje para o teste");
+
+        ConcurrentLinkedQueue<Long> criados = new ConcurrentLinkedQueue<>();
+        AtomicInteger recusados = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+
+        List<Callable<Void>> tarefas = new ArrayList<>();
+        for (Long quarto : quartos) {
+            for (int i = 0; i < CHECK_INS_POR_QUARTO; i++) {
+                tarefas.add(() -> {
+                    largada.await();
+                    try {
+                        criados.add(pernoiteService.criarPernoite(new CreatePernoiteRequest(
+                                hoje, amanha, LocalTime.of(14, 0), LocalTime.of(12, 0),
+                                quarto, List.of(), List.of())));
+                    } catch (IllegalStateException e) {
+                        recusados.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Void>> futuros = new ArrayList<>();
+            for (Callable<Void> tarefa : tarefas) futuros.add(pool.submit(tarefa));
+
+            largada.countDown();
+            for (Future<Void> futuro : futuros) futuro.get(60, TimeUnit.SECONDS);
+
+            for (Long quarto : quartos) {
+                Integer diarias = jdbcTemplate.queryForObject("""
+                        SELECT COUNT(*) FROM diaria
+                        WHERE quarto_id = ? AND NOT cancelada AND data_inicio = ?
+                        """, Integer.class, quarto, hoje);
+                assertEquals(1, diarias, "Quarto " + quarto + " deveria ter exatamente uma diária hoje");
+            }
+
+            assertEquals(quartos.size(), criados.size());
+            assertEquals(tarefas.size() - quartos.size(), recusados.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * O travamento é por quarto: com o quarto A travado por outra transação, um check-in no quarto B
+     * termina normalmente, e o check-in no próprio quarto A espera a trava ser liberada.
+     */
+    @Test
+    void checkInEmOutroQuartoNaoEsperaOTravamento() throws Exception {
+        LocalDate hoje = LocalDate.now();
+        LocalDate amanha = hoje.plusDays(1);
+
+        List<Long> quartos = jdbcTemplate.queryForList("""
+                SELECT q.id FROM quarto q
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM diaria d
+                    WHERE d.quarto_id = q.id AND NOT d.cancelada AND d.data_inicio = ?
+                )
+                ORDER BY q.id
+                LIMIT 2
+                """, Long.class, hoje);
+        assumeTrue(quartos.size() == 2, "São necessários dois quartos livres hoje para o teste");
+        Long quartoTravado = quartos.get(0);
+        Long outroQuarto = quartos.get(1);
+
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        CountDownLatch travado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> trava = pool.submit(() -> transacao.executeWithoutResult(status -> {
+                pernoiteRepository.bloquearQuarto(quartoTravado);
+                travado.countDown();
+                try {
+                    liberar.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assumeTrue(travado.await(10, TimeUnit.SECONDS), "Não foi possível travar o quarto");
+
+            Future<Long> noOutroQuarto = pool.submit(() -> pernoiteService.criarPernoite(new CreatePernoiteRequest(
+                    hoje, amanha, LocalTime.of(14, 0), LocalTime.of(12, 0), outroQuarto, List.of(), List.of())));
+            assertNotNull(noOutroQuarto.get(5, TimeUnit.SECONDS),
+                    "Check-in em outro quarto não deveria esperar o travamento do quarto " + quartoTravado);
+
+            Future<Long> noQuartoTravado = pool.submit(() -> pernoiteService.criarPernoite(new CreatePernoiteRequest(
+                    hoje, amanha, LocalTime.of(14, 0), LocalTime.of(12, 0), quartoTravado, List.of(), List.of())));
+            assertThrows(TimeoutException.class, () -> noQuartoTravado.get(500, TimeUnit.MILLISECONDS),
+                    "Check-in no quarto travado deveria esperar a trava");
+
+            liberar.countDown();
+            trava.get(10, TimeUnit.SECONDS);
+            assertNotNull(noQuartoTravado.get(10, TimeUnit.SECONDS));
+        } finally {
+            liberar.countDown();
+            pool.shutdownNow();
+        }
+    }
+}